@@ -0,0 +1,167 @@
+package br.com.davibrito.rinha_backend_2025.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compartimento isolado de execução: scheduler próprio, limite de operações simultâneas
+ * e fila de espera limitada. Quando a fila enche, novas operações falham com
+ * {@link BulkheadFullException} em vez de consumir recursos de outros compartimentos.
+ */
+public class Bulkhead {
+
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int RELEASED = 2;
+
+    private final String name;
+    private final Scheduler scheduler;
+    private final int maxConcurrent;
+    private final int maxQueued;
+
+    private final Object lock = new Object();
+    private final Queue<Waiter> waiting = new ArrayDeque<>();
+    private int active;
+
+    private final Counter rejected;
+
+    public Bulkhead(String name, int threads, int maxConcurrent, int maxQueued, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.scheduler = Schedulers.newBoundedElastic(threads, maxConcurrent + maxQueued, "bulkhead-" + name);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+
+        Gauge.builder("rinha.bulkhead.active", this, Bulkhead::getActive)
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("rinha.bulkhead.queued", this, Bulkhead::getQueued)
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("rinha.bulkhead.rejected")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Executa a operação dentro do compartimento, aguardando vaga se necessário.
+     */
+    public <T> Mono<T> execute(Mono<T> work) {
+        return Mono.usingWhen(acquire(),
+                permit -> work.subscribeOn(scheduler),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    /**
+     * Executa o fluxo dentro do compartimento, ocupando a vaga até o fim do fluxo.
+     */
+    public <T> Flux<T> execute(Flux<T> work) {
+        return Flux.usingWhen(acquire(),
+                permit -> work.subscribeOn(scheduler),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public int getActive() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return waiting.size();
+        }
+    }
+
+    void dispose() {
+        scheduler.dispose();
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+            Permit permit = new Permit();
+            boolean granted = false;
+
+            synchronized (lock) {
+                if (active < maxConcurrent) {
+                    active++;
+                    permit.state.set(GRANTED);
+                    granted = true;
+                } else if (waiting.size() < maxQueued) {
+                    waiting.add(new Waiter(sink, permit));
+                } else {
+                    rejected.increment();
+                    sink.error(new BulkheadFullException(name));
+                    return;
+                }
+            }
+
+            sink.onCancel(permit::release);
+            if (granted) {
+                sink.success(permit);
+            }
+        }).doOnDiscard(Permit.class, Permit::release);
+    }
+
+    /**
+     * Devolve a vaga: repassa para o próximo da fila ou libera o contador.
+     */
+    private void handOver() {
+        while (true) {
+            Waiter next;
+            synchronized (lock) {
+                next = waiting.poll();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            }
+            if (next.permit.state.compareAndSet(WAITING, GRANTED)) {
+                next.sink.success(next.permit);
+                return;
+            }
+            // Cancelado enquanto aguardava: tenta o próximo
+        }
+    }
+
+    private void removeWaiting(Permit permit) {
+        synchronized (lock) {
+            waiting.removeIf(waiter -> waiter.permit == permit);
+        }
+    }
+
+    /**
+     * Vaga de execução. Liberação idempotente.
+     */
+    private final class Permit {
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        void release() {
+            if (state.compareAndSet(GRANTED, RELEASED)) {
+                handOver();
+            } else if (state.compareAndSet(WAITING, RELEASED)) {
+                removeWaiting(this);
+            }
+        }
+    }
+
+    private record Waiter(MonoSink<Permit> sink, Permit permit) {
+    }
+}
@@ -0,0 +1,11 @@
+package br.com.davibrito.rinha_backend_2025.config;
+
+/**
+ * Lançada quando um {@link Bulkhead} está com todas as vagas e a fila de espera ocupadas.
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String bulkheadName) {
+        super("Bulkhead '" + bulkheadName + "' está cheio");
+    }
+}
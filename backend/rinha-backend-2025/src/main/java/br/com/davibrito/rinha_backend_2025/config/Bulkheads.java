@@ -0,0 +1,117 @@
+package br.com.davibrito.rinha_backend_2025.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compartimentos de execução da aplicação. Cada estágio tem scheduler, limite de
+ * concorrência e fila próprios, configuráveis por {@code rinha.bulkhead.<nome>.*}
+ * (threads, max-concurrent, max-queued).
+ *
+ * Os limites de persistence e summary particionam o pool do R2DBC: cada operação
+ * desses compartimentos é um único comando em uma conexão (o resumo agrupa os dois
+ * processadores na mesma consulta), então a soma dos max-concurrent (8 + 2) é o máximo
+ * de conexões que eles seguram e deve caber em {@code spring.r2dbc.pool.max-size}
+ * (padrão 10), garantindo que consultas de resumo nunca tomem as conexões da escrita.
+ * Ficam fora da conta e devem ser somadas ao pool: cada exportação em andamento
+ * ({@code rinha.bulkhead.export.max-concurrent}) e, no nível UNLOGGED, a drenagem do
+ * staging (uma conexão por vez).
+ *
+ * As filas de persistence e dos dois dispatch comportam todos os pagamentos que o pipeline
+ * pode ter em andamento, somados os shards
+ * ({@code shards × rinha.processing.batch.max-in-flight × rinha.processing.batch.max-size}):
+ * cada pagamento ocupa no máximo uma vaga por vez em cada compartimento, e a consulta de
+ * deduplicação de um lote termina antes das gravações dele. Assim nem o envio nem a
+ * gravação de um pagamento aceito encontram o compartimento cheio pela carga do próprio
+ * pipeline, com qualquer número de shards.
+ */
+@Component
+public class Bulkheads implements DisposableBean {
+
+    private final Bulkhead intake;
+    private final Bulkhead defaultDispatch;
+    private final Bulkhead fallbackDispatch;
+    private final Bulkhead persistence;
+    private final Bulkhead summary;
+    private final Bulkhead export;
+
+    public Bulkheads(Environment environment, MeterRegistry meterRegistry) {
+        int processorConnections = environment.getProperty("rinha.processor.max-connections", Integer.class, 64);
+        int pipelinePayments = pipelinePayments(environment);
+
+        this.intake = create("intake", 2, 512, 1024, environment, meterRegistry);
+        this.defaultDispatch = create("dispatch-default", 1, processorConnections, pipelinePayments, environment, meterRegistry);
+        this.fallbackDispatch = create("dispatch-fallback", 1, processorConnections, pipelinePayments, environment, meterRegistry);
+        this.persistence = create("persistence", 2, 8, pipelinePayments, environment, meterRegistry);
+        this.summary = create("summary", 1, 2, 16, environment, meterRegistry);
+        this.export = create("export", 1, 1, 2, environment, meterRegistry);
+    }
+
+    /**
+     * Recepção de pagamentos (POST /payments).
+     */
+    public Bulkhead intake() {
+        return intake;
+    }
+
+    /**
+     * Envio de pagamentos ao processador informado ("default" ou "fallback").
+     */
+    public Bulkhead dispatch(String processor) {
+        return "default".equals(processor) ? defaultDispatch : fallbackDispatch;
+    }
+
+    /**
+     * Escritas e deduplicação no banco.
+     */
+    public Bulkhead persistence() {
+        return persistence;
+    }
+
+    /**
+     * Consultas do lado de leitura (resumo de pagamentos).
+     */
+    public Bulkhead summary() {
+        return summary;
+    }
+
+    /**
+     * Exportações de pagamentos (GET /payments/export), longas e fora do caminho crítico.
+     */
+    public Bulkhead export() {
+        return export;
+    }
+
+    @Override
+    public void destroy() {
+        intake.dispose();
+        defaultDispatch.dispose();
+        fallbackDispatch.dispose();
+        persistence.dispose();
+        summary.dispose();
+        export.dispose();
+    }
+
+    /**
+     * Máximo de pagamentos em andamento no pipeline, somados os shards (0 = um por núcleo).
+     */
+    private static int pipelinePayments(Environment environment) {
+        int shards = environment.getProperty("rinha.processing.shards", Integer.class, 1);
+        int maxBatchSize = environment.getProperty("rinha.processing.batch.max-size", Integer.class, 64);
+        int maxInFlightBatches = environment.getProperty("rinha.processing.batch.max-in-flight", Integer.class, 4);
+        int shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        return shardCount * maxInFlightBatches * maxBatchSize;
+    }
+
+    private static Bulkhead create(String name, int threads, int maxConcurrent, int maxQueued,
+                                   Environment environment, MeterRegistry meterRegistry) {
+        String prefix = "rinha.bulkhead." + name + ".";
+        return new Bulkhead(name,
+                environment.getProperty(prefix + "threads", Integer.class, threads),
+                environment.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+                environment.getProperty(prefix + "max-queued", Integer.class, maxQueued),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,28 @@
+package br.com.davibrito.rinha_backend_2025.config;
+
+import io.r2dbc.spi.Option;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.r2dbc.ConnectionFactoryOptionsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * Ajustes de sessão do Postgres conforme o nível de durabilidade escolhido.
+ */
+@Configuration
+public class DurabilityConfig {
+
+    private static final Option<Map<String, String>> SESSION_OPTIONS = Option.valueOf("options");
+
+    /**
+     * Nos níveis "async" e "unlogged" todas as conexões do pool abrem com
+     * {@code synchronous_commit=off}.
+     */
+    @Bean
+    @ConditionalOnExpression("'${rinha.storage.durability:strict}'.toLowerCase() != 'strict'")
+    public ConnectionFactoryOptionsBuilderCustomizer asyncCommitCustomizer() {
+        return builder -> builder.option(SESSION_OPTIONS, Map.of("synchronous_commit", "off"));
+    }
+}
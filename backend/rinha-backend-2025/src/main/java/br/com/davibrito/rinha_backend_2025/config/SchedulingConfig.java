@@ -0,0 +1,28 @@
+package br.com.davibrito.rinha_backend_2025.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Habilita as tarefas {@code @Scheduled} em um scheduler dedicado, separado dos schedulers
+ * do Reactor e dos event loops do Netty.
+ *
+ * As tarefas (health-check, reconciliação e manutenção de partições) dividem uma única
+ * thread, {@code scheduled-1}. Cada uma só dispara o trabalho reativo e retorna, sem
+ * bloquear; uma tarefa que bloqueasse atrasaria as outras, inclusive o health-check.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("scheduled-");
+        scheduler.setDaemon(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,32 @@
+package br.com.davibrito.rinha_backend_2025.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/**
+ * Com {@code rinha.storage.backend=mmap} a aplicação não usa banco: desliga as
+ * autoconfigurações do R2DBC para que nenhuma conexão com o Postgres seja exigida.
+ */
+public class StorageBackendEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String R2DBC_AUTO_CONFIGURATIONS = String.join(",",
+            "org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration",
+            "org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration",
+            "org.springframework.boot.autoconfigure.data.r2dbc.R2dbcDataAutoConfiguration",
+            "org.springframework.boot.autoconfigure.data.r2dbc.R2dbcRepositoriesAutoConfiguration");
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!"mmap".equalsIgnoreCase(environment.getProperty("rinha.storage.backend", "postgres"))) {
+            return;
+        }
+        String excluded = environment.getProperty("spring.autoconfigure.exclude", "");
+        String exclusions = excluded.isBlank() ? R2DBC_AUTO_CONFIGURATIONS : excluded + "," + R2DBC_AUTO_CONFIGURATIONS;
+        environment.getPropertySources().addFirst(new MapPropertySource("rinhaStorageBackend",
+                Map.of("spring.autoconfigure.exclude", exclusions)));
+    }
+}
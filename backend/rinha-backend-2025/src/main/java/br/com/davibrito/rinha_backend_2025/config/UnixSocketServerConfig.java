@@ -0,0 +1,131 @@
+package br.com.davibrito.rinha_backend_2025.config;
+
+import io.netty.channel.unix.DomainSocketAddress;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+
+/**
+ * Transporte entre o nginx e a API via Unix domain socket ({@code rinha.server.transport}).
+ *
+ * <ul>
+ *   <li>{@code tcp} (padrão): só a porta TCP do Spring;</li>
+ *   <li>{@code uds}: o servidor do Spring escuta apenas no socket;</li>
+ *   <li>{@code both}: porta TCP do Spring e um segundo servidor no socket, com o mesmo HttpHandler.</li>
+ * </ul>
+ *
+ * Requer o transporte nativo epoll do Netty (Linux).
+ */
+@Configuration
+public class UnixSocketServerConfig {
+
+    /**
+     * Substitui o endereço TCP do servidor do Spring pelo socket.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rinha.server.transport", havingValue = "uds")
+    public WebServerFactoryCustomizer<NettyReactiveWebServerFactory> unixSocketOnlyCustomizer(
+            @Value("${rinha.server.uds.path:/var/run/rinha/api.sock}") String socketPath,
+            @Value("${rinha.server.uds.idle-timeout:PT60S}") Duration idleTimeout) {
+        return factory -> factory.addServerCustomizers(
+                server -> bindToSocket(server, Paths.get(socketPath), idleTimeout));
+    }
+
+    /**
+     * Servidor adicional no socket, ao lado da porta TCP.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rinha.server.transport", havingValue = "both")
+    public UnixSocketServer unixSocketServer(
+            HttpHandler httpHandler,
+            @Value("${rinha.server.uds.path:/var/run/rinha/api.sock}") String socketPath,
+            @Value("${rinha.server.uds.idle-timeout:PT60S}") Duration idleTimeout) {
+        return new UnixSocketServer(httpHandler, Paths.get(socketPath), idleTimeout);
+    }
+
+    /**
+     * Aponta o servidor para o socket: remove um socket antigo deixado por uma execução
+     * anterior e libera leitura/escrita no arquivo para o nginx (outro usuário) conectar.
+     * As conexões keep-alive do upstream do nginx ficam abertas até {@code idleTimeout}.
+     */
+    static HttpServer bindToSocket(HttpServer server, Path socketPath, Duration idleTimeout) {
+        try {
+            Files.createDirectories(socketPath.toAbsolutePath().getParent());
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível preparar o socket " + socketPath, e);
+        }
+        return server
+                .bindAddress(() -> new DomainSocketAddress(socketPath.toString()))
+                .idleTimeout(idleTimeout)
+                .doOnBound(bound -> makeAccessible(socketPath));
+    }
+
+    private static void makeAccessible(Path socketPath) {
+        try {
+            Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-rw-rw-"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível ajustar as permissões de " + socketPath, e);
+        }
+    }
+
+    /**
+     * Segundo servidor Reactor Netty, atendendo no socket as mesmas rotas da API.
+     */
+    public static class UnixSocketServer implements SmartLifecycle {
+
+        private final HttpHandler httpHandler;
+        private final Path socketPath;
+        private final Duration idleTimeout;
+
+        private volatile DisposableServer server;
+
+        public UnixSocketServer(HttpHandler httpHandler, Path socketPath, Duration idleTimeout) {
+            this.httpHandler = httpHandler;
+            this.socketPath = socketPath;
+            this.idleTimeout = idleTimeout;
+        }
+
+        @Override
+        public void start() {
+            server = bindToSocket(HttpServer.create(), socketPath, idleTimeout)
+                    .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                    .bindNow();
+        }
+
+        @Override
+        public void stop() {
+            DisposableServer current = server;
+            if (current != null) {
+                current.disposeNow();
+                server = null;
+            }
+            try {
+                Files.deleteIfExists(socketPath);
+            } catch (IOException e) {
+                // Socket será removido na próxima subida
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            return server != null;
+        }
+    }
+}
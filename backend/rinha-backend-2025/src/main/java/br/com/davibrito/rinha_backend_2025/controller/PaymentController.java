@@ -1,21 +1,32 @@
 package br.com.davibrito.rinha_backend_2025.controller;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import br.com.davibrito.rinha_backend_2025.config.BulkheadFullException;
 import br.com.davibrito.rinha_backend_2025.dtos.PaymentRequest;
 import br.com.davibrito.rinha_backend_2025.dtos.PaymentSummaryResponse;
 import br.com.davibrito.rinha_backend_2025.model.ProcessedPayment;
 import br.com.davibrito.rinha_backend_2025.service.PaymentService;
+import br.com.davibrito.rinha_backend_2025.trace.TrafficTrace;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
 /**
  * Controlador responsável pelos endpoints de pagamentos da API.
  * Implementa os endpoints conforme especificação da Rinha de Backend 2025.
@@ -25,37 +36,77 @@ import reactor.core.publisher.Mono;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final TrafficTrace trafficTrace;
 
     @Autowired
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, ObjectProvider<TrafficTrace> trafficTraceProvider) {
         this.paymentService = paymentService;
+        this.trafficTrace = trafficTraceProvider.getIfAvailable();
     }
 
     /**
      * Endpoint para processar um novo pagamento.
      * 
      * @param paymentRequest os dados do pagamento a ser processado
-     * @return o pagamento processado com status 201 (CREATED)
+     * @return o pagamento processado com status 201 (CREATED), ou 503 se a recepção estiver saturada
      */
     @PostMapping("/payments")
     public Mono<ResponseEntity<ProcessedPayment>> processPayment(@Validated @RequestBody PaymentRequest paymentRequest) {
+        if (trafficTrace != null) {
+            trafficTrace.recordArrival(paymentRequest);
+        }
         return paymentService.processPayment(paymentRequest)
                 .map(payment -> ResponseEntity.status(HttpStatus.CREATED).body(payment))
+                .onErrorResume(BulkheadFullException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()))
                 .onErrorResume(e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
     }
 
     /**
      * Endpoint para obter o resumo de pagamentos.
      * 
+     * @param from início opcional da faixa (ISO-8601, ex.: 2020-07-10T12:34:56.000Z)
+     * @param to fim opcional da faixa (ISO-8601)
      * @return o resumo dos pagamentos com status 200 (OK)
      */
     @GetMapping("/payments-summary")
-    public Mono<ResponseEntity<PaymentSummaryResponse>> getPaymentsSummary() {
-        return paymentService.getPaymentsSummary()
+    public Mono<ResponseEntity<PaymentSummaryResponse>> getPaymentsSummary(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return paymentService.getPaymentsSummary(toLocalDateTime(from), toLocalDateTime(to))
                 .map(summary -> ResponseEntity.ok(summary))
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Endpoint de exportação dos pagamentos processados, para auditoria.
+     * A resposta é transmitida à medida que as linhas são lidas, com memória constante.
+     * 
+     * @param from início opcional da faixa (ISO-8601)
+     * @param to fim opcional da faixa (ISO-8601)
+     * @param processor "default" ou "fallback"; omitido exporta os dois
+     * @return NDJSON com status 200 (OK), 400 para processador inválido ou 503 se já
+     *         houver exportações demais em andamento
+     */
+    @GetMapping("/payments/export")
+    public Mono<Void> exportPayments(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String processor,
+            ServerHttpResponse response) {
+        if (processor != null && !"default".equals(processor) && !"fallback".equals(processor)) {
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            return response.setComplete();
+        }
+        response.getHeaders().setContentType(MediaType.APPLICATION_NDJSON);
+        return response.writeWith(paymentService.exportPayments(
+                        processor, toLocalDateTime(from), toLocalDateTime(to), response.bufferFactory()))
+                .onErrorResume(BulkheadFullException.class, e -> {
+                    response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                    return response.setComplete();
+                });
+    }
+
     /**
      * Endpoint secreto para limpeza de dados usado pelos testes.
      * Obrigatório conforme especificação da Rinha de Backend 2025.
@@ -67,4 +118,11 @@ public class PaymentController {
         return paymentService.purgeAllPayments()
                 .then(Mono.just(ResponseEntity.ok().build()));
     }
+
+    /**
+     * Converte para o mesmo fuso usado em processed_at (LocalDateTime.now()).
+     */
+    private static LocalDateTime toLocalDateTime(Instant instant) {
+        return instant != null ? LocalDateTime.ofInstant(instant, ZoneId.systemDefault()) : null;
+    }
 }
\ No newline at end of file
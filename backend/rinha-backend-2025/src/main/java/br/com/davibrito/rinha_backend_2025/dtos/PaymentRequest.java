@@ -1,27 +1,31 @@
 package br.com.davibrito.rinha_backend_2025.dtos;
 
+import br.com.davibrito.rinha_backend_2025.model.Cents;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.DecimalMin;
-import java.math.BigDecimal;
+import jakarta.validation.constraints.Positive;
 import java.util.UUID;
 
 /**
  * DTO para receber requisições de pagamento conforme especificação da Rinha.
  * Deve conter apenas correlationId (UUID) e amount (Decimal).
+ * O amount é mantido internamente em centavos (ver {@link Cents}).
  */
 public class PaymentRequest {
 
     @NotNull(message = "O correlationId é obrigatório")
     private UUID correlationId;
 
-    @NotNull(message = "O valor do pagamento é obrigatório")
-    @DecimalMin(value = "0.01", message = "O valor do pagamento deve ser maior que zero")
-    private BigDecimal amount;
+    @Positive(message = "O valor do pagamento deve ser maior que zero")
+    @JsonDeserialize(using = Cents.Deserializer.class)
+    @JsonSerialize(using = Cents.Serializer.class)
+    private long amount; // em centavos
 
     public PaymentRequest() {
     }
 
-    public PaymentRequest(UUID correlationId, BigDecimal amount) {
+    public PaymentRequest(UUID correlationId, long amount) {
         this.correlationId = correlationId;
         this.amount = amount;
     }
@@ -34,11 +38,11 @@ public class PaymentRequest {
         this.correlationId = correlationId;
     }
 
-    public BigDecimal getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package br.com.davibrito.rinha_backend_2025.dtos;
 
-import java.math.BigDecimal;
+import br.com.davibrito.rinha_backend_2025.model.Cents;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 /**
  * DTO para resumo de pagamentos conforme especificação da Rinha.
@@ -40,12 +41,13 @@ public class PaymentSummaryResponse {
      */
     public static class ProcessorSummary {
         private long totalRequests;
-        private BigDecimal totalAmount;
+        @JsonSerialize(using = Cents.Serializer.class)
+        private long totalAmount; // em centavos
 
         public ProcessorSummary() {
         }
 
-        public ProcessorSummary(long totalRequests, BigDecimal totalAmount) {
+        public ProcessorSummary(long totalRequests, long totalAmount) {
             this.totalRequests = totalRequests;
             this.totalAmount = totalAmount;
         }
@@ -58,11 +60,11 @@ public class PaymentSummaryResponse {
             this.totalRequests = totalRequests;
         }
 
-        public BigDecimal getTotalAmount() {
+        public long getTotalAmount() {
             return totalAmount;
         }
 
-        public void setTotalAmount(BigDecimal totalAmount) {
+        public void setTotalAmount(long totalAmount) {
             this.totalAmount = totalAmount;
         }
     }
@@ -0,0 +1,36 @@
+package br.com.davibrito.rinha_backend_2025.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Mudança de estado do circuit breaker do processador default.
+ */
+@Name("rinha.CircuitTransition")
+@Label("Circuit Transition")
+@Category({"Rinha", "Circuit Breaker"})
+@Description("Mudança de estado do circuit breaker do processador default")
+public class CircuitTransitionEvent extends Event {
+
+    @Label("From")
+    public String from;
+
+    @Label("To")
+    public String to;
+
+    @Label("Reason")
+    public String reason;
+
+    public static void emit(String from, String to, String reason) {
+        CircuitTransitionEvent event = new CircuitTransitionEvent();
+        if (event.shouldCommit()) {
+            event.from = from;
+            event.to = to;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package br.com.davibrito.rinha_backend_2025.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Consulta de deduplicação de um lote no ledger.
+ */
+@Name("rinha.DedupCheck")
+@Label("Dedup Check")
+@Category({"Rinha", "Pipeline"})
+@Description("Consulta dos correlationIds já gravados, uma por lote")
+@StackTrace(false)
+public class DedupCheckEvent extends Event {
+
+    @Label("Batch Size")
+    public int batchSize;
+
+    @Label("Already Processed")
+    public int alreadyProcessed;
+
+    @Label("Outcome")
+    public String outcome;
+
+    public void complete(int batchSize, int alreadyProcessed, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.batchSize = batchSize;
+            this.alreadyProcessed = alreadyProcessed;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
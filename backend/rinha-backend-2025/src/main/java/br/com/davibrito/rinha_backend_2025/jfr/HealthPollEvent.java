@@ -0,0 +1,41 @@
+package br.com.davibrito.rinha_backend_2025.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Consulta ao health-check de um processador.
+ * Outcome: healthy, failing, rate-limited (HTTP 429) ou error.
+ */
+@Name("rinha.HealthPoll")
+@Label("Health Poll")
+@Category({"Rinha", "Health Check"})
+@Description("Consulta ao endpoint service-health de um processador")
+@StackTrace(false)
+public class HealthPollEvent extends Event {
+
+    @Label("Processor")
+    public String processor;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Min Response Time")
+    @Timespan(Timespan.MILLISECONDS)
+    public long minResponseTime;
+
+    public void complete(String processor, String outcome, long minResponseTime) {
+        end();
+        if (shouldCommit()) {
+            this.processor = processor;
+            this.outcome = outcome;
+            this.minResponseTime = minResponseTime;
+            commit();
+        }
+    }
+}
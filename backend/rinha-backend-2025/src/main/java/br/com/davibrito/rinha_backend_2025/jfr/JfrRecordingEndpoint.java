@@ -0,0 +1,151 @@
+package br.com.davibrito.rinha_backend_2025.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Controle da gravação JFR pelo Actuator ({@code /actuator/jfr}, exposto com
+ * {@code management.endpoints.web.exposure.include=jfr}).
+ *
+ * <ul>
+ *   <li>{@code GET /actuator/jfr}: estado da gravação;</li>
+ *   <li>{@code POST /actuator/jfr/start}: inicia a gravação contínua, com o perfil
+ *       "default" do JDK mais {@code jfr/rinha.jfc} e janela de {@code rinha.jfr.max-age};</li>
+ *   <li>{@code POST /actuator/jfr/dump}: copia a janela atual para um arquivo em
+ *       {@code rinha.jfr.dump-directory}, sem parar a gravação;</li>
+ *   <li>{@code POST /actuator/jfr/stop}: encerra a gravação.</li>
+ * </ul>
+ *
+ * Com {@code rinha.jfr.start-on-boot=true} a gravação já começa na subida.
+ */
+@Component
+@Endpoint(id = "jfr")
+public class JfrRecordingEndpoint {
+
+    private static final String RECORDING_NAME = "rinha";
+    private static final String PRESET = "/jfr/rinha.jfc";
+    private static final DateTimeFormatter DUMP_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path dumpDirectory;
+    private final Duration maxAge;
+
+    private Recording recording;
+
+    public JfrRecordingEndpoint(
+            @Value("${rinha.jfr.dump-directory:/tmp}") String dumpDirectory,
+            @Value("${rinha.jfr.max-age:PT10M}") Duration maxAge,
+            @Value("${rinha.jfr.start-on-boot:false}") boolean startOnBoot) {
+        this.dumpDirectory = Paths.get(dumpDirectory);
+        this.maxAge = maxAge;
+        if (startOnBoot) {
+            start();
+        }
+    }
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", recording != null ? recording.getState().name() : "NONE");
+        status.put("maxAge", maxAge.toString());
+        if (recording != null && recording.getStartTime() != null) {
+            status.put("startTime", recording.getStartTime().toString());
+        }
+        return status;
+    }
+
+    /**
+     * Ações: start, dump ou stop.
+     */
+    @WriteOperation
+    public synchronized Map<String, Object> control(@Selector String action) {
+        Map<String, Object> result = switch (action) {
+            case "start" -> start();
+            case "dump" -> dump();
+            case "stop" -> stop();
+            default -> throw new InvalidEndpointRequestException("Ação desconhecida: " + action, "Ação inválida");
+        };
+        result.putAll(status());
+        return result;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private synchronized Map<String, Object> start() {
+        if (recording == null) {
+            Recording created = new Recording(settings());
+            created.setName(RECORDING_NAME);
+            created.setToDisk(true);
+            created.setMaxAge(maxAge);
+            created.start();
+            recording = created;
+        }
+        return new LinkedHashMap<>();
+    }
+
+    private Map<String, Object> dump() {
+        if (recording == null) {
+            throw new InvalidEndpointRequestException("Nenhuma gravação em andamento", "Gravação não iniciada");
+        }
+        Path file = dumpDirectory.resolve("rinha-" + DUMP_SUFFIX.format(LocalDateTime.now()) + ".jfr");
+        try {
+            Files.createDirectories(dumpDirectory);
+            recording.dump(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível gravar " + file, e);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("file", file.toAbsolutePath().toString());
+        return result;
+    }
+
+    private Map<String, Object> stop() {
+        close();
+        return new LinkedHashMap<>();
+    }
+
+    /**
+     * Perfil "default" do JDK com os eventos do pipeline do preset por cima.
+     */
+    private static Map<String, String> settings() {
+        try (Reader preset = new InputStreamReader(
+                JfrRecordingEndpoint.class.getResourceAsStream(PRESET), StandardCharsets.UTF_8)) {
+            Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+            settings.putAll(Configuration.create(preset).getSettings());
+            return settings;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível ler " + PRESET, e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Preset JFR inválido: " + PRESET, e);
+        }
+    }
+}
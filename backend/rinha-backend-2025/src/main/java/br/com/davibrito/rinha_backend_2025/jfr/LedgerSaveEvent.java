@@ -0,0 +1,42 @@
+package br.com.davibrito.rinha_backend_2025.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+/**
+ * Gravação de um pagamento confirmado no ledger.
+ * Outcome: success, duplicate (já gravado), error ou bulkhead-full (sem vaga; a gravação
+ * espera e tenta de novo, emitindo um evento por tentativa).
+ */
+@Name("rinha.LedgerSave")
+@Label("Ledger Save")
+@Category({"Rinha", "Pipeline"})
+@Description("Gravação do pagamento confirmado pelo processador")
+@StackTrace(false)
+public class LedgerSaveEvent extends Event {
+
+    @Label("Correlation Id")
+    public String correlationId;
+
+    @Label("Processor")
+    public String processor;
+
+    @Label("Outcome")
+    public String outcome;
+
+    public void complete(UUID correlationId, String processor, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.correlationId = correlationId.toString();
+            this.processor = processor;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package br.com.davibrito.rinha_backend_2025.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+/**
+ * Chamada HTTP a um processador (default ou fallback), desde o pedido de vaga no bulkhead.
+ * Outcome: success (2xx), rejected (o processador respondeu com outro status, inclusive
+ * 4xx/5xx, que o WebClient entrega como erro), error (timeout, conexão, sem resposta) ou
+ * bulkhead-full (sem vaga; a chamada não chegou a ser feita).
+ */
+@Name("rinha.ProcessorCall")
+@Label("Processor Call")
+@Category({"Rinha", "Pipeline"})
+@Description("Envio de um pagamento a um processador")
+@StackTrace(false)
+public class ProcessorCallEvent extends Event {
+
+    @Label("Correlation Id")
+    public String correlationId;
+
+    @Label("Processor")
+    public String processor;
+
+    @Label("Outcome")
+    public String outcome;
+
+    public void complete(UUID correlationId, String processor, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.correlationId = correlationId.toString();
+            this.processor = processor;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package br.com.davibrito.rinha_backend_2025.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.UUID;
+
+/**
+ * Espera de um pagamento entre a recepção e o início do envio ao processador.
+ * A espera começa em outra thread, então vai no campo {@code queueWait}, não na duração do evento.
+ */
+@Name("rinha.QueueWait")
+@Label("Queue Wait")
+@Category({"Rinha", "Pipeline"})
+@Description("Tempo entre a recepção do pagamento e a vaga para envio ao processador")
+@StackTrace(false)
+public class QueueWaitEvent extends Event {
+
+    @Label("Correlation Id")
+    public String correlationId;
+
+    @Label("Processor")
+    public String processor;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueWait;
+
+    public static void emit(UUID correlationId, String processor, long waitNanos) {
+        QueueWaitEvent event = new QueueWaitEvent();
+        if (event.shouldCommit()) {
+            event.correlationId = correlationId.toString();
+            event.processor = processor;
+            event.queueWait = waitNanos;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package br.com.davibrito.rinha_backend_2025.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Representação monetária em ponto fixo: valores trafegam como {@code long} de centavos
+ * desde o JSON de entrada até o banco e as agregações, sem {@link BigDecimal} nem double.
+ */
+public final class Cents {
+
+    private static final int MAX_FAST_DIGITS = 16; // units * 100 + fraction < 1e18, sem overflow de long
+
+    private Cents() {
+    }
+
+    /**
+     * Converte um texto decimal ("19.90", "19.9", "19") em centavos.
+     * Valores com mais de duas casas ou em notação científica são arredondados (HALF_EVEN).
+     */
+    public static long parse(CharSequence text) {
+        char[] chars = text.toString().toCharArray();
+        return parse(chars, 0, chars.length);
+    }
+
+    /**
+     * Converte o trecho {@code [offset, offset + length)} do buffer em centavos.
+     * Caminho rápido sem alocação para o formato usual com até duas casas decimais.
+     */
+    public static long parse(char[] buffer, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long units = 0;
+        int digits = 0;
+        while (i < end && isDigit(buffer[i])) {
+            units = units * 10 + (buffer[i] - '0');
+            digits++;
+            i++;
+        }
+
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < end && buffer[i] == '.') {
+            i++;
+            while (i < end && isDigit(buffer[i])) {
+                int digit = buffer[i] - '0';
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + digit;
+                    fractionDigits++;
+                } else if (digit != 0) {
+                    return parseSlow(buffer, offset, length); // Mais de duas casas significativas
+                }
+                i++;
+            }
+        }
+
+        if (i != end || digits == 0 || digits > MAX_FAST_DIGITS) {
+            return parseSlow(buffer, offset, length); // Expoente, texto inválido ou valor muito grande
+        }
+
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        long cents = units * 100 + fraction;
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Formata centavos como decimal exato com duas casas ("1990" -> "19.90").
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    /**
+     * Escreve centavos formatados no {@link StringBuilder} informado.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long cents) {
+        if (cents < 0) {
+            builder.append('-');
+        }
+        long units = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+
+        builder.append(units).append('.');
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+
+    /**
+     * Converte centavos em {@link BigDecimal} com escala 2 (uso fora do caminho quente).
+     */
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static long parseSlow(char[] buffer, int offset, int length) {
+        try {
+            return new BigDecimal(buffer, offset, length)
+                    .movePointRight(2)
+                    .setScale(0, RoundingMode.HALF_EVEN)
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Valor monetário fora do intervalo: " + new String(buffer, offset, length));
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Lê números JSON (ou strings numéricas) diretamente como centavos.
+     */
+    public static class Deserializer extends StdDeserializer<Long> {
+
+        public Deserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT
+                    || token == JsonToken.VALUE_NUMBER_FLOAT
+                    || token == JsonToken.VALUE_STRING) {
+                try {
+                    return parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                } catch (NumberFormatException e) {
+                    return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), e.getMessage());
+                }
+            }
+            return (Long) context.handleUnexpectedToken(Long.class, parser);
+        }
+    }
+
+    /**
+     * Escreve centavos como número JSON decimal exato (ex.: {@code 19.90}).
+     */
+    public static class Serializer extends StdSerializer<Long> {
+
+        public Serializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long cents, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(format(cents));
+        }
+    }
+}
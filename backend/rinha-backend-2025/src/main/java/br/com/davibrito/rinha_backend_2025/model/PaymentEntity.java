@@ -4,7 +4,6 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.relational.core.mapping.Table;
 import org.springframework.data.relational.core.mapping.Column;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -21,8 +20,8 @@ public class PaymentEntity {
     @Column("correlation_id")
     private UUID correlationId;
 
-    @Column("amount")
-    private BigDecimal amount;
+    @Column("amount_cents")
+    private long amountCents;
 
     @Column("processed_at")
     private LocalDateTime processedAt;
@@ -33,9 +32,9 @@ public class PaymentEntity {
     public PaymentEntity() {
     }
 
-    public PaymentEntity(UUID correlationId, BigDecimal amount, LocalDateTime processedAt, String processorUsed) {
+    public PaymentEntity(UUID correlationId, long amountCents, LocalDateTime processedAt, String processorUsed) {
         this.correlationId = correlationId;
-        this.amount = amount;
+        this.amountCents = amountCents;
         this.processedAt = processedAt;
         this.processorUsed = processorUsed;
     }
@@ -56,12 +55,12 @@ public class PaymentEntity {
         this.correlationId = correlationId;
     }
 
-    public BigDecimal getAmount() {
-        return amount;
+    public long getAmountCents() {
+        return amountCents;
     }
 
-    public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
     }
 
     public LocalDateTime getProcessedAt() {
@@ -1,6 +1,7 @@
 package br.com.davibrito.rinha_backend_2025.model;
 
-import java.math.BigDecimal;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 import java.time.LocalDateTime;
 
 /**
@@ -8,7 +9,8 @@ import java.time.LocalDateTime;
  */
 public class ProcessedPayment {
     private String id;
-    private BigDecimal amount;
+    @JsonSerialize(using = Cents.Serializer.class)
+    private long amount; // em centavos
     private String description;
     private LocalDateTime timestamp;
     private String status;
@@ -16,7 +18,7 @@ public class ProcessedPayment {
     public ProcessedPayment() {
     }
 
-    public ProcessedPayment(String id, BigDecimal amount, String description, LocalDateTime timestamp, String status) {
+    public ProcessedPayment(String id, long amount, String description, LocalDateTime timestamp, String status) {
         this.id = id;
         this.amount = amount;
         this.description = description;
@@ -32,11 +34,11 @@ public class ProcessedPayment {
         this.id = id;
     }
 
-    public BigDecimal getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
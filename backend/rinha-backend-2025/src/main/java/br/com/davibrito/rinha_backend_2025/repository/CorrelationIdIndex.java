@@ -0,0 +1,56 @@
+package br.com.davibrito.rinha_backend_2025.repository;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Índice hash (endereçamento aberto, sondagem linear) dos correlationIds do ledger
+ * mapeado. Cada posição guarda apenas o número do registro + 1 (0 = vazia); o UUID é
+ * comparado direto no arquivo, então o índice ocupa 4 bytes por posição.
+ * Não é thread-safe: o acesso é serializado pelo {@link MappedFilePaymentLedger}.
+ */
+class CorrelationIdIndex {
+
+    private final int[] slots;
+    private final int mask;
+
+    CorrelationIdIndex(int capacity) {
+        // Fator de carga máximo de 50%
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.slots = new int[size];
+        this.mask = size - 1;
+    }
+
+    boolean contains(ByteBuffer records, long msb, long lsb) {
+        int slot = hash(msb, lsb) & mask;
+        while (slots[slot] != 0) {
+            int position = MappedFilePaymentLedger.recordPosition(slots[slot] - 1);
+            if (records.getLong(position) == msb && records.getLong(position + 8) == lsb) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    void add(ByteBuffer records, int record) {
+        int position = MappedFilePaymentLedger.recordPosition(record);
+        int slot = hash(records.getLong(position), records.getLong(position + 8)) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = record + 1;
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0);
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,30 @@
+package br.com.davibrito.rinha_backend_2025.repository;
+
+/**
+ * Níveis de durabilidade da escrita de pagamentos ({@code rinha.storage.durability}).
+ */
+public enum DurabilityTier {
+
+    /**
+     * Commit síncrono: cada save espera o flush do WAL. Nada é perdido em uma queda do Postgres.
+     */
+    STRICT,
+
+    /**
+     * {@code synchronous_commit=off} na sessão: o commit não espera o flush do WAL.
+     * Uma queda do Postgres pode perder as últimas transações (até ~3x wal_writer_delay),
+     * mas nunca corrompe a tabela.
+     */
+    ASYNC,
+
+    /**
+     * Escrita em tabela UNLOGGED de staging, drenada em segundo plano para a tabela principal
+     * (também com commit assíncrono). Uma queda do Postgres esvazia o staging: perde-se
+     * o que ainda não foi drenado (até um intervalo de drenagem).
+     */
+    UNLOGGED;
+
+    public static DurabilityTier from(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+}
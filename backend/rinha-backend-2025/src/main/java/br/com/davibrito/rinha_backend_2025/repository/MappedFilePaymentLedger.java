@@ -0,0 +1,464 @@
+package br.com.davibrito.rinha_backend_2025.repository;
+
+import br.com.davibrito.rinha_backend_2025.model.PaymentEntity;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ledger embutido ({@code rinha.storage.backend=mmap}): arquivo mapeado em memória,
+ * somente-anexação, com registros de tamanho fixo.
+ *
+ * <pre>
+ * cabeçalho (64 bytes): magic | versão | tamanho do registro | época | quantidade
+ * registro  (40 bytes): correlationId (16) | centavos (8) | processed_at em ms (8) | processador (1) | padding
+ * </pre>
+ *
+ * Os registros são gravados em ordem de chegada, com o processed_at recebido. Um índice em
+ * memória os mantém ordenados por processed_at, o que permite achar uma faixa de datas por
+ * busca binária. Um registro fora de ordem (relógios de réplicas diferentes, gravações
+ * concorrentes, reparo da reconciliação com o horário do processador) desloca só a parte
+ * do índice posterior a ele. A cada {@value #SNAPSHOT_INTERVAL} posições do índice é
+ * guardado um snapshot dos totais acumulados por processador, então qualquer soma por
+ * faixa lê no máximo dois blocos. A deduplicação usa um índice hash em memória
+ * ({@link CorrelationIdIndex}). Índices e snapshots são reconstruídos a partir do arquivo.
+ *
+ * O arquivo pode ser compartilhado entre réplicas (volume comum): anexações são
+ * serializadas por lock no arquivo e cada processo incorpora os registros novos dos
+ * outros antes de ler. O purge incrementa a época, fazendo os demais reconstruírem.
+ * Quantidade e época são publicadas com release e lidas com acquire: quem vê a
+ * quantidade nova vê também os bytes dos registros que ela cobre.
+ *
+ * O arquivo não cresce. Com ele cheio, {@link #save} falha e o health-check fica DOWN;
+ * antes disso a recepção já recusa pagamentos novos (ver {@link #remainingCapacity()}).
+ */
+@Component
+@ConditionalOnProperty(name = "rinha.storage.backend", havingValue = "mmap")
+public class MappedFilePaymentLedger implements PaymentLedger, HealthIndicator {
+
+    private static final long MAGIC = 0x52494E48414C4752L; // "RINHALGR"
+    private static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 40;
+    static final int SNAPSHOT_INTERVAL = 1024;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int RECORD_SIZE_OFFSET = 12;
+    private static final int EPOCH_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+
+    private static final int MSB_OFFSET = 0;
+    private static final int LSB_OFFSET = 8;
+    private static final int CENTS_OFFSET = 16;
+    private static final int PROCESSED_AT_OFFSET = 24;
+    private static final int PROCESSOR_OFFSET = 32;
+
+    private static final byte DEFAULT_PROCESSOR = 0;
+    private static final byte FALLBACK_PROCESSOR = 1;
+
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Scheduler syncScheduler = Schedulers.newSingle("ledger-sync", true);
+    private final Disposable syncTask;
+    private final AtomicLong rejectedSaves = new AtomicLong();
+
+    // Estado em memória derivado do arquivo (protegido por "this")
+    private final CorrelationIdIndex index;
+    private final int[] order;             // registros do arquivo em ordem de processed_at
+    private final long[][] snapshotCount;  // [processador][bloco] totais acumulados antes do bloco
+    private final long[][] snapshotCents;
+    private final long[] runningCount = new long[2];
+    private final long[] runningCents = new long[2];
+    private long knownEpoch;
+    private int indexed;
+
+    public MappedFilePaymentLedger(
+            @Value("${rinha.storage.mmap.path:/var/lib/rinha/ledger.dat}") String path,
+            @Value("${rinha.storage.mmap.capacity:500000}") int capacity,
+            @Value("${rinha.storage.mmap.sync-interval:PT1S}") Duration syncInterval) {
+        this.capacity = capacity;
+        this.index = new CorrelationIdIndex(capacity);
+        this.order = new int[capacity];
+        int blocks = capacity / SNAPSHOT_INTERVAL + 2;
+        this.snapshotCount = new long[2][blocks];
+        this.snapshotCents = new long[2][blocks];
+
+        try {
+            Path file = Paths.get(path);
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            initializeHeader();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível abrir o ledger " + path, e);
+        }
+
+        synchronized (this) {
+            catchUp();
+        }
+
+        // Páginas sujas vão para o disco periodicamente (o page cache já sobrevive à queda do processo)
+        this.syncTask = Flux.interval(syncInterval, syncScheduler)
+                .subscribe(tick -> buffer.force());
+    }
+
+    @Override
+    public Flux<UUID> findExistingCorrelationIds(Collection<UUID> correlationIds) {
+        return Mono.fromCallable(() -> {
+            List<UUID> existing = new ArrayList<>();
+            synchronized (this) {
+                catchUp();
+                for (UUID correlationId : correlationIds) {
+                    if (index.contains(buffer, correlationId.getMostSignificantBits(),
+                            correlationId.getLeastSignificantBits())) {
+                        existing.add(correlationId);
+                    }
+                }
+            }
+            return existing;
+        }).flatMapIterable(existing -> existing);
+    }
+
+    /**
+     * Anexa o registro sob lock do arquivo. Um correlationId já gravado (por este ou
+     * outro processo) é ignorado.
+     */
+    @Override
+    public Mono<Boolean> save(PaymentEntity entity) {
+        return Mono.fromCallable(() -> {
+            byte processor = processorCode(entity.getProcessorUsed());
+            long processedAt = entity.getProcessedAt().atZone(zone).toInstant().toEpochMilli();
+            UUID correlationId = entity.getCorrelationId();
+
+            synchronized (this) {
+                try (FileLock lock = channel.lock(0, HEADER_SIZE, false)) {
+                    catchUp();
+                    long msb = correlationId.getMostSignificantBits();
+                    long lsb = correlationId.getLeastSignificantBits();
+                    if (index.contains(buffer, msb, lsb)) {
+                        return false;
+                    }
+                    if (indexed >= capacity) {
+                        rejectedSaves.incrementAndGet();
+                        throw new IllegalStateException("Ledger cheio (" + capacity + " registros)");
+                    }
+
+                    int position = recordPosition(indexed);
+                    buffer.putLong(position + MSB_OFFSET, msb);
+                    buffer.putLong(position + LSB_OFFSET, lsb);
+                    buffer.putLong(position + CENTS_OFFSET, entity.getAmountCents());
+                    buffer.putLong(position + PROCESSED_AT_OFFSET, processedAt);
+                    buffer.put(position + PROCESSOR_OFFSET, processor);
+
+                    // Publica o registro só depois de escrito por completo
+                    LONG_VIEW.setRelease(buffer, COUNT_OFFSET, indexed + 1L);
+                    catchUp();
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Mono<Map<String, ProcessorTotals>> summarize(LocalDateTime from, LocalDateTime to) {
+        return Mono.fromCallable(() -> {
+            synchronized (this) {
+                catchUp();
+                int start = from != null ? lowerBound(from.atZone(zone).toInstant().toEpochMilli()) : 0;
+                int end = to != null ? upperBound(to.atZone(zone).toInstant().toEpochMilli()) : indexed;
+                return Map.of("default", totals(DEFAULT_PROCESSOR, start, end),
+                        "fallback", totals(FALLBACK_PROCESSOR, start, end));
+            }
+        });
+    }
+
+    private ProcessorTotals totals(int code, int start, int end) {
+        if (start >= end) {
+            return new ProcessorTotals(0, 0);
+        }
+        long[] upper = prefix(code, end);
+        long[] lower = prefix(code, start);
+        return new ProcessorTotals(upper[0] - lower[0], upper[1] - lower[1]);
+    }
+
+    /**
+     * Percorre os registros da faixa em ordem de processed_at, um a um conforme a demanda.
+     * A faixa é fixada na assinatura, com cópia da parte do índice que ela cobre: registros
+     * anexados depois ficam de fora, mesmo os que entrariam no meio dela. Um purge durante a
+     * exportação encerra o fluxo.
+     */
+    @Override
+    public <T> Flux<T> export(String processor, LocalDateTime from, LocalDateTime to, ExportRowMapper<T> mapper) {
+        int code = processor != null ? processorCode(processor) : -1;
+        return Flux.defer(() -> {
+            int[] records;
+            long epoch;
+            synchronized (this) {
+                catchUp();
+                int start = from != null ? lowerBound(from.atZone(zone).toInstant().toEpochMilli()) : 0;
+                int end = to != null ? upperBound(to.atZone(zone).toInstant().toEpochMilli()) : indexed;
+                records = Arrays.copyOfRange(order, start, Math.max(start, end));
+                epoch = knownEpoch;
+            }
+            return Flux.<T, Integer>generate(() -> 0, (slot, sink) -> {
+                int next = slot;
+                while (next < records.length && code >= 0
+                        && buffer.get(recordPosition(records[next]) + PROCESSOR_OFFSET) != code) {
+                    next++;
+                }
+                if (next >= records.length || (long) LONG_VIEW.getAcquire(buffer, EPOCH_OFFSET) != epoch) {
+                    sink.complete();
+                    return next;
+                }
+                int position = recordPosition(records[next]);
+                sink.next(mapper.map(
+                        new UUID(buffer.getLong(position + MSB_OFFSET), buffer.getLong(position + LSB_OFFSET)),
+                        buffer.getLong(position + CENTS_OFFSET),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong(position + PROCESSED_AT_OFFSET)), zone),
+                        buffer.get(position + PROCESSOR_OFFSET) == DEFAULT_PROCESSOR ? "default" : "fallback"));
+                return next + 1;
+            });
+        });
+    }
+
+    @Override
+    public Mono<Void> purge() {
+        return Mono.fromRunnable(() -> {
+            synchronized (this) {
+                try (FileLock lock = channel.lock(0, HEADER_SIZE, false)) {
+                    LONG_VIEW.setRelease(buffer, COUNT_OFFSET, 0L);
+                    LONG_VIEW.setRelease(buffer, EPOCH_OFFSET, (long) LONG_VIEW.getAcquire(buffer, EPOCH_OFFSET) + 1);
+                    catchUp();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Registros que ainda cabem no arquivo, contando os gravados por outros processos.
+     */
+    @Override
+    public long remainingCapacity() {
+        return capacity - Math.min((long) LONG_VIEW.getAcquire(buffer, COUNT_OFFSET), capacity);
+    }
+
+    /**
+     * DOWN com o arquivo cheio ou depois de algum pagamento recusado por falta de espaço:
+     * esses pagamentos foram cobrados pelo processador e não estão no ledger.
+     */
+    @Override
+    public Health health() {
+        long remaining = remainingCapacity();
+        Health.Builder health = remaining > 0 && rejectedSaves.get() == 0 ? Health.up() : Health.down();
+        return health.withDetail("capacity", capacity)
+                .withDetail("remaining", remaining)
+                .withDetail("rejectedSaves", rejectedSaves.get())
+                .build();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        syncTask.dispose();
+        syncScheduler.dispose();
+        buffer.force();
+        channel.close();
+    }
+
+    private void initializeHeader() throws IOException {
+        try (FileLock lock = channel.lock(0, HEADER_SIZE, false)) {
+            if (buffer.getLong(MAGIC_OFFSET) == 0) {
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+                buffer.putLong(EPOCH_OFFSET, 0);
+                buffer.putLong(COUNT_OFFSET, 0);
+                buffer.putLong(MAGIC_OFFSET, MAGIC);
+            } else if (buffer.getLong(MAGIC_OFFSET) != MAGIC
+                    || buffer.getInt(VERSION_OFFSET) != VERSION
+                    || buffer.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+                throw new IllegalStateException("Arquivo de ledger com formato incompatível");
+            }
+        }
+    }
+
+    /**
+     * Incorpora ao índice e aos snapshots os registros gravados desde a última leitura,
+     * inclusive por outros processos. Reconstrói tudo se houve purge (época mudou).
+     */
+    private void catchUp() {
+        long epoch = (long) LONG_VIEW.getAcquire(buffer, EPOCH_OFFSET);
+        if (epoch != knownEpoch) {
+            reset();
+            knownEpoch = epoch;
+        }
+
+        int count = (int) Math.min((long) LONG_VIEW.getAcquire(buffer, COUNT_OFFSET), capacity);
+        if (count < indexed) {
+            reset(); // Purge concorrente sem mudança de época visível ainda
+        }
+        while (indexed < count) {
+            int position = recordPosition(indexed);
+            int processor = buffer.get(position + PROCESSOR_OFFSET);
+            long cents = buffer.getLong(position + CENTS_OFFSET);
+            insertOrdered(indexed, processor, cents);
+            runningCount[processor]++;
+            runningCents[processor] += cents;
+            index.add(buffer, indexed);
+            indexed++;
+
+            if (indexed % SNAPSHOT_INTERVAL == 0) {
+                int block = indexed / SNAPSHOT_INTERVAL;
+                for (int p = 0; p < 2; p++) {
+                    snapshotCount[p][block] = runningCount[p];
+                    snapshotCents[p][block] = runningCents[p];
+                }
+            }
+        }
+    }
+
+    /**
+     * Coloca o registro no índice por processed_at, depois dos de mesmo horário. Fora de
+     * ordem, desloca a parte posterior do índice e corrige os snapshots dos blocos cuja
+     * fronteira ficou depois dele: cada um ganha o registro inserido e perde o que foi
+     * empurrado para além da fronteira.
+     */
+    private void insertOrdered(int record, int processor, long cents) {
+        int slot = upperBound(processedAtOf(record));
+        if (slot < indexed) {
+            System.arraycopy(order, slot, order, slot + 1, indexed - slot);
+            for (int block = slot / SNAPSHOT_INTERVAL + 1; block * SNAPSHOT_INTERVAL <= indexed; block++) {
+                int crossed = recordPosition(order[block * SNAPSHOT_INTERVAL]);
+                int crossedProcessor = buffer.get(crossed + PROCESSOR_OFFSET);
+                snapshotCount[processor][block]++;
+                snapshotCents[processor][block] += cents;
+                snapshotCount[crossedProcessor][block]--;
+                snapshotCents[crossedProcessor][block] -= buffer.getLong(crossed + CENTS_OFFSET);
+            }
+        }
+        order[slot] = record;
+    }
+
+    private void reset() {
+        index.clear();
+        indexed = 0;
+        for (int p = 0; p < 2; p++) {
+            runningCount[p] = 0;
+            runningCents[p] = 0;
+        }
+    }
+
+    /**
+     * Totais acumulados (quantidade, centavos) do processador nas posições [0, end) do índice.
+     */
+    private long[] prefix(int processor, int end) {
+        if (end == indexed) {
+            return new long[] {runningCount[processor], runningCents[processor]};
+        }
+        int block = end / SNAPSHOT_INTERVAL;
+        long count = snapshotCount[processor][block];
+        long cents = snapshotCents[processor][block];
+        for (int i = block * SNAPSHOT_INTERVAL; i < end; i++) {
+            int position = recordPosition(order[i]);
+            if (buffer.get(position + PROCESSOR_OFFSET) == processor) {
+                count++;
+                cents += buffer.getLong(position + CENTS_OFFSET);
+            }
+        }
+        return new long[] {count, cents};
+    }
+
+    /**
+     * Primeira posição do índice com processed_at >= millis.
+     */
+    private int lowerBound(long millis) {
+        int low = 0;
+        int high = indexed;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (processedAtOf(order[mid]) < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Primeira posição do índice com processed_at > millis.
+     */
+    private int upperBound(long millis) {
+        int low = 0;
+        int high = indexed;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (processedAtOf(order[mid]) <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long processedAtOf(int record) {
+        return buffer.getLong(recordPosition(record) + PROCESSED_AT_OFFSET);
+    }
+
+    static int recordPosition(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private static byte processorCode(String processor) {
+        return switch (processor) {
+            case "default" -> DEFAULT_PROCESSOR;
+            case "fallback" -> FALLBACK_PROCESSOR;
+            default -> throw new IllegalArgumentException("Processador desconhecido: " + processor);
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package br.com.davibrito.rinha_backend_2025.repository;
+
+import br.com.davibrito.rinha_backend_2025.model.PaymentEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Armazenamento dos pagamentos processados, selecionado por {@code rinha.storage.backend}:
+ * {@code postgres} (padrão, {@link PostgresPaymentLedger}) ou {@code mmap}
+ * ({@link MappedFilePaymentLedger}, em processo, sem banco).
+ */
+public interface PaymentLedger {
+
+    /**
+     * Retorna, dentre os correlationIds informados, os que já foram gravados.
+     */
+    Flux<UUID> findExistingCorrelationIds(Collection<UUID> correlationIds);
+
+    /**
+     * Verifica se um pagamento já foi gravado pelo correlationId.
+     */
+    default Mono<Boolean> existsByCorrelationId(UUID correlationId) {
+        return findExistingCorrelationIds(List.of(correlationId)).hasElements();
+    }
+
+    /**
+     * Grava um pagamento confirmado pelo processador, se o correlationId ainda não estiver
+     * gravado. Emite {@code true} se gravou e {@code false} se já existia; a verificação é
+     * feita pelo armazenamento no mesmo passo da gravação, sem janela entre as duas.
+     */
+    Mono<Boolean> save(PaymentEntity entity);
+
+    /**
+     * Quantos pagamentos ainda cabem no ledger. Ilimitado nos backends que crescem sob demanda.
+     */
+    default long remainingCapacity() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Totais por processador ("default" e "fallback", sempre os dois) dentro da faixa, com
+     * limites inclusivos; {@code null} em uma ponta significa faixa aberta.
+     */
+    Mono<Map<String, ProcessorTotals>> summarize(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Percorre os pagamentos da faixa (limites inclusivos, {@code null} = faixa aberta),
+     * de um processador ou dos dois ({@code processor} nulo). As linhas são lidas sob
+     * demanda conforme o assinante pede (backpressure) e entregues ao {@code mapper}
+     * sem montar entidades nem listas em memória.
+     */
+    <T> Flux<T> export(String processor, LocalDateTime from, LocalDateTime to, ExportRowMapper<T> mapper);
+
+    /**
+     * Remove todos os pagamentos gravados.
+     */
+    Mono<Void> purge();
+
+    /**
+     * Completa com totais zerados o processador que não apareceu na agregação.
+     */
+    static Map<String, ProcessorTotals> withBothProcessors(Map<String, ProcessorTotals> totals) {
+        ProcessorTotals none = new ProcessorTotals(0, 0);
+        return Map.of("default", totals.getOrDefault("default", none),
+                "fallback", totals.getOrDefault("fallback", none));
+    }
+
+    /**
+     * Converte uma linha exportada no elemento emitido pelo {@link #export}.
+     */
+    @FunctionalInterface
+    interface ExportRowMapper<T> {
+        T map(UUID correlationId, long amountCents, LocalDateTime processedAt, String processor);
+    }
+}
@@ -1,12 +1,14 @@
 package br.com.davibrito.rinha_backend_2025.repository;
 
 import br.com.davibrito.rinha_backend_2025.model.PaymentEntity;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.UUID;
 
 /**
@@ -16,49 +18,17 @@ import java.util.UUID;
 public interface PaymentRepository extends R2dbcRepository<PaymentEntity, Long> {
 
     /**
-     * Verifica se um pagamento já foi processado pelo correlationId.
-     * Importante para evitar duplicações.
+     * Retorna, dentre os correlationIds informados, os que já foram processados.
+     * Usado para deduplicar um lote inteiro com uma única consulta.
      */
-    Mono<Boolean> existsByCorrelationId(UUID correlationId);
+    @Query("SELECT correlation_id FROM processed_payments WHERE correlation_id IN (:ids)")
+    Flux<UUID> findExistingCorrelationIds(@Param("ids") Collection<UUID> ids);
 
     /**
-     * Calcula o total de requisições processadas pelo processador default.
+     * Remove todos os pagamentos de uma vez (inclusive de todas as partições),
+     * em vez do DELETE linha a linha do deleteAll().
      */
-    @Query("SELECT COUNT(*) FROM processed_payments WHERE processor_used = 'default'")
-    Mono<Long> countDefaultProcessorRequests();
-
-    /**
-     * Calcula o total de requisições processadas pelo processador fallback.
-     */
-    @Query("SELECT COUNT(*) FROM processed_payments WHERE processor_used = 'fallback'")
-    Mono<Long> countFallbackProcessorRequests();
-
-    /**
-     * Calcula o valor total processado pelo processador default.
-     */
-    @Query("SELECT COALESCE(SUM(amount), 0) FROM processed_payments WHERE processor_used = 'default'")
-    Mono<Double> sumDefaultProcessorAmount();
-
-    /**
-     * Calcula o valor total processado pelo processador fallback.
-     */
-    @Query("SELECT COALESCE(SUM(amount), 0) FROM processed_payments WHERE processor_used = 'fallback'")
-    Mono<Double> sumFallbackProcessorAmount();
-
-    /**
-     * Calcula totais com filtro de data opcional.
-     */
-    @Query("SELECT COUNT(*) FROM processed_payments WHERE processor_used = :processor " +
-           "AND (:from IS NULL OR processed_at >= :from) " +
-           "AND (:to IS NULL OR processed_at <= :to)")
-    Mono<Long> countByProcessorAndDateRange(@Param("processor") String processor,
-                                           @Param("from") LocalDateTime from,
-                                           @Param("to") LocalDateTime to);
-
-    @Query("SELECT COALESCE(SUM(amount), 0) FROM processed_payments WHERE processor_used = :processor " +
-           "AND (:from IS NULL OR processed_at >= :from) " +
-           "AND (:to IS NULL OR processed_at <= :to)")
-    Mono<Double> sumByProcessorAndDateRange(@Param("processor") String processor,
-                                           @Param("from") LocalDateTime from,
-                                           @Param("to") LocalDateTime to);
+    @Modifying
+    @Query("TRUNCATE processed_payments RESTART IDENTITY")
+    Mono<Void> truncate();
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+package br.com.davibrito.rinha_backend_2025.repository;
+
+import br.com.davibrito.rinha_backend_2025.model.PaymentEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ledger em PostgreSQL via R2DBC, ciente do nível de durabilidade ({@link DurabilityTier}).
+ * Nos níveis STRICT e ASYNC grava direto na tabela principal; no nível UNLOGGED grava
+ * no staging, que é drenado em segundo plano e lido junto com a tabela principal.
+ */
+@Component
+@ConditionalOnProperty(name = "rinha.storage.backend", havingValue = "postgres", matchIfMissing = true)
+public class PostgresPaymentLedger implements PaymentLedger {
+
+    private static final String STAGING_TABLE = "processed_payments_staging";
+
+    private static final String DRAIN_SQL =
+            "WITH moved AS (DELETE FROM " + STAGING_TABLE + " " +
+            "RETURNING correlation_id, amount_cents, processed_at, processor_used) " +
+            "INSERT INTO processed_payments (correlation_id, amount_cents, processed_at, processor_used) " +
+            "SELECT correlation_id, amount_cents, processed_at, processor_used FROM moved " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO processed_payments (correlation_id, amount_cents, processed_at, processor_used) " +
+            "VALUES (:correlationId, :amountCents, :processedAt, :processorUsed) " +
+            "ON CONFLICT DO NOTHING";
+
+    // Um id já drenado não volta ao staging; o índice único barra repetição dentro dele
+    private static final String STAGE_SQL =
+            "INSERT INTO " + STAGING_TABLE + " (correlation_id, amount_cents, processed_at, processor_used) " +
+            "SELECT :correlationId, :amountCents, :processedAt, :processorUsed " +
+            "WHERE NOT EXISTS (SELECT 1 FROM processed_payments WHERE correlation_id = :correlationId) " +
+            "ON CONFLICT DO NOTHING";
+
+    // Limites usados quando a faixa de datas só tem uma das pontas
+    private static final LocalDateTime MIN_PROCESSED_AT = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_PROCESSED_AT = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private final PaymentRepository paymentRepository;
+    private final DatabaseClient databaseClient;
+    private final DurabilityTier durabilityTier;
+    private final Duration drainInterval;
+    private final int exportFetchSize;
+
+    private Scheduler drainScheduler;
+    private Disposable drainer;
+
+    public PostgresPaymentLedger(
+            PaymentRepository paymentRepository,
+            DatabaseClient databaseClient,
+            @Value("${rinha.storage.durability:strict}") String durabilityTier,
+            @Value("${rinha.storage.staging.drain-interval:PT0.2S}") Duration drainInterval,
+            @Value("${rinha.export.fetch-size:1000}") int exportFetchSize) {
+        this.paymentRepository = paymentRepository;
+        this.databaseClient = databaseClient;
+        this.durabilityTier = DurabilityTier.from(durabilityTier);
+        this.drainInterval = drainInterval;
+        this.exportFetchSize = exportFetchSize;
+    }
+
+    /**
+     * No nível UNLOGGED cria o staging e inicia a drenagem periódica.
+     */
+    @PostConstruct
+    public void initialize() {
+        if (durabilityTier != DurabilityTier.UNLOGGED) {
+            return;
+        }
+        databaseClient.sql("CREATE UNLOGGED TABLE IF NOT EXISTS " + STAGING_TABLE + " (" +
+                        "correlation_id UUID NOT NULL, " +
+                        "amount_cents BIGINT NOT NULL, " +
+                        "processed_at TIMESTAMP NOT NULL, " +
+                        "processor_used VARCHAR(10) NOT NULL)")
+                .then()
+                .then(flush()) // Sobras da execução anterior, antes de exigir unicidade
+                .then(databaseClient.sql("CREATE UNIQUE INDEX IF NOT EXISTS " + STAGING_TABLE + "_correlation_id_idx " +
+                        "ON " + STAGING_TABLE + " (correlation_id)").then())
+                .block(Duration.ofSeconds(30));
+
+        drainScheduler = Schedulers.newSingle("staging-drainer");
+        drainer = Flux.interval(drainInterval, drainScheduler)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush().onErrorResume(error -> Mono.empty()))
+                .subscribe();
+    }
+
+    /**
+     * Para a drenagem periódica e drena o que restou no staging.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (drainer != null) {
+            drainer.dispose();
+            drainScheduler.dispose();
+            flush().onErrorResume(error -> Mono.empty()).block(Duration.ofSeconds(10));
+        }
+    }
+
+    public DurabilityTier getDurabilityTier() {
+        return durabilityTier;
+    }
+
+    /**
+     * Inclui os que ainda estão no staging.
+     */
+    @Override
+    public Flux<UUID> findExistingCorrelationIds(Collection<UUID> correlationIds) {
+        if (durabilityTier != DurabilityTier.UNLOGGED) {
+            return paymentRepository.findExistingCorrelationIds(correlationIds);
+        }
+        return databaseClient.sql("SELECT correlation_id FROM processed_payments WHERE correlation_id = ANY(:ids) " +
+                        "UNION ALL " +
+                        "SELECT correlation_id FROM " + STAGING_TABLE + " WHERE correlation_id = ANY(:ids)")
+                .bind("ids", correlationIds.toArray(new UUID[0]))
+                .map(row -> row.get("correlation_id", UUID.class))
+                .all();
+    }
+
+    /**
+     * Grava conforme o nível de durabilidade, com {@code ON CONFLICT DO NOTHING}: a
+     * unicidade de correlation_id é garantida pelo banco (UNIQUE na tabela comum, trigger
+     * no layout particionado), então gravações concorrentes do mesmo id gravam uma vez só.
+     */
+    @Override
+    public Mono<Boolean> save(PaymentEntity entity) {
+        return databaseClient.sql(durabilityTier != DurabilityTier.UNLOGGED ? INSERT_SQL : STAGE_SQL)
+                .bind("correlationId", entity.getCorrelationId())
+                .bind("amountCents", entity.getAmountCents())
+                .bind("processedAt", entity.getProcessedAt())
+                .bind("processorUsed", entity.getProcessorUsed())
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    /**
+     * Move o staging para a tabela principal. Leituras não dependem disto: resumo e
+     * exportação consultam o staging junto.
+     */
+    public Mono<Void> flush() {
+        if (durabilityTier != DurabilityTier.UNLOGGED) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(DRAIN_SQL).then();
+    }
+
+    /**
+     * Uma única consulta, em uma conexão, agrupada por processador. No nível UNLOGGED soma
+     * também o que ainda está no staging, em vez de drenar antes: a drenagem move as linhas
+     * em um só comando, então o snapshot da consulta vê cada linha em um lugar só.
+     */
+    @Override
+    public Mono<Map<String, ProcessorTotals>> summarize(LocalDateTime from, LocalDateTime to) {
+        String sql = "SELECT processor_used, COUNT(*) AS total_requests, " +
+                "COALESCE(SUM(amount_cents), 0)::bigint AS total_amount_cents FROM (" +
+                rangeSelect("processor_used, amount_cents") + ") payments GROUP BY processor_used";
+
+        return databaseClient.sql(sql)
+                .bind("from", from != null ? from : MIN_PROCESSED_AT)
+                .bind("to", to != null ? to : MAX_PROCESSED_AT)
+                .map(row -> Map.entry(
+                        row.get("processor_used", String.class),
+                        new ProcessorTotals(row.get("total_requests", Long.class),
+                                row.get("total_amount_cents", Long.class))))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .map(PaymentLedger::withBothProcessors);
+    }
+
+    /**
+     * Consulta com fetch size: o driver busca o resultado em blocos de
+     * {@code rinha.export.fetch-size} linhas pelo mesmo portal, só pedindo o próximo
+     * bloco quando o assinante consome o anterior. Sem ORDER BY, para o banco não
+     * precisar ordenar a tabela inteira antes da primeira linha.
+     */
+    @Override
+    public <T> Flux<T> export(String processor, LocalDateTime from, LocalDateTime to, ExportRowMapper<T> mapper) {
+        String sql = "SELECT * FROM (" + rangeSelect("correlation_id, amount_cents, processed_at, processor_used") +
+                ") payments" + (processor != null ? " WHERE processor_used = :processor" : "");
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(exportFetchSize))
+                .bind("from", from != null ? from : MIN_PROCESSED_AT)
+                .bind("to", to != null ? to : MAX_PROCESSED_AT);
+        if (processor != null) {
+            spec = spec.bind("processor", processor);
+        }
+        return spec
+                .map(row -> mapper.map(
+                        row.get("correlation_id", UUID.class),
+                        row.get("amount_cents", Long.class),
+                        row.get("processed_at", LocalDateTime.class),
+                        row.get("processor_used", String.class)))
+                .all();
+    }
+
+    /**
+     * Linhas da tabela principal com processed_at entre {@code :from} e {@code :to}, mais
+     * as do staging no nível UNLOGGED.
+     */
+    private String rangeSelect(String columns) {
+        String select = "SELECT " + columns + " FROM processed_payments WHERE processed_at BETWEEN :from AND :to";
+        if (durabilityTier != DurabilityTier.UNLOGGED) {
+            return select;
+        }
+        return select + " UNION ALL SELECT " + columns + " FROM " + STAGING_TABLE +
+                " WHERE processed_at BETWEEN :from AND :to";
+    }
+
+    /**
+     * TRUNCATE da tabela principal (e do staging, no nível UNLOGGED).
+     */
+    @Override
+    public Mono<Void> purge() {
+        if (durabilityTier != DurabilityTier.UNLOGGED) {
+            return paymentRepository.truncate();
+        }
+        return databaseClient.sql("TRUNCATE processed_payments, " + STAGING_TABLE + " RESTART IDENTITY").then();
+    }
+}
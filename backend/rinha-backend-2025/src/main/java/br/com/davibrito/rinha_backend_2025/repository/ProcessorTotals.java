@@ -0,0 +1,7 @@
+package br.com.davibrito.rinha_backend_2025.repository;
+
+/**
+ * Totais agregados de um processador: quantidade de pagamentos e soma em centavos.
+ */
+public record ProcessorTotals(long totalRequests, long totalAmountCents) {
+}
@@ -0,0 +1,201 @@
+package br.com.davibrito.rinha_backend_2025.repository;
+
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Layout particionado da tabela processed_payments ({@code rinha.storage.layout=partitioned}).
+ *
+ * A tabela passa a ser particionada por faixa de processed_at, com partições de
+ * {@code rinha.storage.partition.granularity} criadas pela aplicação na subida e
+ * periodicamente à frente do relógio, mais uma partição DEFAULT de segurança.
+ * Consultas de resumo com from/to só leem as partições da faixa pedida.
+ *
+ * Em tabelas particionadas o PostgreSQL só aceita UNIQUE contendo a chave de partição,
+ * então a unicidade de correlation_id passa para a tabela comum {@code processed_payment_ids}
+ * (chave primária correlation_id): um trigger BEFORE INSERT reserva o id nela e descarta a
+ * linha se ele já existia, do mesmo jeito que o {@code ON CONFLICT DO NOTHING} na tabela
+ * comum. Um trigger de TRUNCATE limpa os ids junto com os pagamentos.
+ *
+ * A conversão roda em uma transação sob {@code pg_advisory_xact_lock}: réplicas subindo
+ * juntas esperam a primeira terminar e reavaliam o tipo da tabela, e uma queda no meio
+ * desfaz tudo, deixando a tabela comum intacta.
+ */
+@Component
+@ConditionalOnProperty(name = "rinha.storage.layout", havingValue = "partitioned")
+public class StorageLayoutInitializer {
+
+    private static final String TABLE = "processed_payments";
+    private static final String STAGING_TABLE = "processed_payments_partitioned";
+    private static final String IDS_TABLE = "processed_payment_ids";
+    // Chave do advisory lock que serializa a conversão entre réplicas
+    private static final long LAYOUT_LOCK = 0x52494E4841L; // "RINHA"
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final Duration granularity;
+    private final Duration lookback;
+    private final Duration lookahead;
+
+    public StorageLayoutInitializer(
+            DatabaseClient databaseClient,
+            ConnectionFactory connectionFactory,
+            @Value("${rinha.storage.partition.granularity:PT1H}") Duration granularity,
+            @Value("${rinha.storage.partition.lookback:PT1H}") Duration lookback,
+            @Value("${rinha.storage.partition.lookahead:PT24H}") Duration lookahead) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        this.granularity = granularity;
+        this.lookback = lookback;
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Converte a tabela para o layout particionado (se necessário) antes de a aplicação
+     * começar a gravar pagamentos.
+     */
+    @PostConstruct
+    public void initialize() {
+        Mono<Void> convert = databaseClient.sql("SELECT pg_advisory_xact_lock(" + LAYOUT_LOCK + ")")
+                .fetch()
+                .first()
+                .then(currentTableKind().defaultIfEmpty(""))  // Relido sob o lock
+                .flatMap(kind -> switch (kind) {
+                    case "p" -> enforceUniqueIds(TABLE);        // Já particionada
+                    case "r" -> migrateHeapTable();             // Tabela comum do init.sql
+                    default -> createPartitionedTable(TABLE)    // Tabela inexistente
+                            .then(enforceUniqueIds(TABLE));
+                });
+
+        transactionalOperator.transactional(convert)
+                .then(createPartitions(TABLE, true))
+                .block(Duration.ofSeconds(60));
+    }
+
+    /**
+     * Mantém partições criadas à frente do relógio.
+     */
+    @Scheduled(fixedDelayString = "${rinha.storage.partition.maintenance-interval:PT15M}")
+    public void maintainPartitions() {
+        createPartitions(TABLE, true).subscribe();
+    }
+
+    private Mono<String> currentTableKind() {
+        return databaseClient.sql("SELECT c.relkind::text AS kind FROM pg_class c " +
+                        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                        "WHERE c.relname = '" + TABLE + "' AND n.nspname = current_schema()")
+                .map(row -> row.get("kind", String.class))
+                .one();
+    }
+
+    /**
+     * Cria a tabela particionada ao lado da tabela comum, copia as linhas e troca as duas.
+     * Roda dentro da transação de {@link #initialize()}: qualquer falha, inclusive na criação
+     * de uma partição, propaga e desfaz a conversão inteira.
+     */
+    private Mono<Void> migrateHeapTable() {
+        return createPartitionedTable(STAGING_TABLE)
+                .then(enforceUniqueIds(STAGING_TABLE))
+                .then(execute("TRUNCATE " + IDS_TABLE))  // A cópia registra os ids de novo, pelo trigger
+                .then(createPartitions(STAGING_TABLE, false))
+                .then(execute("INSERT INTO " + STAGING_TABLE + " (correlation_id, amount_cents, processed_at, processor_used) " +
+                        "SELECT correlation_id, amount_cents, processed_at, processor_used FROM " + TABLE))
+                .then(execute("DROP TABLE " + TABLE))
+                .then(execute("ALTER TABLE " + STAGING_TABLE + " RENAME TO " + TABLE));
+    }
+
+    private Mono<Void> createPartitionedTable(String name) {
+        return execute("CREATE TABLE IF NOT EXISTS " + name + " (" +
+                        "id BIGSERIAL, " +
+                        "correlation_id UUID NOT NULL, " +
+                        "amount_cents BIGINT NOT NULL, " +
+                        "processed_at TIMESTAMP NOT NULL, " +
+                        "processor_used VARCHAR(10) NOT NULL, " +
+                        "PRIMARY KEY (id, processed_at)" +
+                        ") PARTITION BY RANGE (processed_at)")
+                .then(execute("CREATE INDEX IF NOT EXISTS " + name + "_correlation_id_idx ON " + name + " (correlation_id)"));
+    }
+
+    /**
+     * Cria a tabela de ids e os triggers que a mantêm. Os ids já gravados só são copiados
+     * para ela quando a tabela de ids acabou de ser criada (layout particionado anterior a
+     * ela); nas demais subidas, uma consulta ao catálogo evita percorrer a tabela inteira.
+     * Idempotente: na tabela já particionada só confere que tudo existe.
+     */
+    private Mono<Void> enforceUniqueIds(String table) {
+        return databaseClient.sql("SELECT to_regclass('" + IDS_TABLE + "') IS NOT NULL AS present")
+                .map(row -> row.get("present", Boolean.class))
+                .one()
+                .flatMap(present -> execute("CREATE TABLE IF NOT EXISTS " + IDS_TABLE + " (correlation_id UUID PRIMARY KEY)")
+                        .then(present ? Mono.<Void>empty() : execute("INSERT INTO " + IDS_TABLE + " (correlation_id) " +
+                                "SELECT correlation_id FROM " + table + " ON CONFLICT DO NOTHING")))
+                .then(execute("CREATE OR REPLACE FUNCTION " + TABLE + "_claim_id() RETURNS trigger " +
+                        "LANGUAGE plpgsql AS $$ BEGIN " +
+                        "INSERT INTO " + IDS_TABLE + " (correlation_id) VALUES (NEW.correlation_id) ON CONFLICT DO NOTHING; " +
+                        "IF NOT FOUND THEN RETURN NULL; END IF; " +     // Id já gravado: descarta a linha
+                        "RETURN NEW; END $$"))
+                .then(execute("CREATE OR REPLACE FUNCTION " + TABLE + "_release_ids() RETURNS trigger " +
+                        "LANGUAGE plpgsql AS $$ BEGIN TRUNCATE " + IDS_TABLE + "; RETURN NULL; END $$"))
+                .then(execute("CREATE OR REPLACE TRIGGER " + TABLE + "_claim_id BEFORE INSERT ON " + table +
+                        " FOR EACH ROW EXECUTE FUNCTION " + TABLE + "_claim_id()"))
+                .then(execute("CREATE OR REPLACE TRIGGER " + TABLE + "_release_ids AFTER TRUNCATE ON " + table +
+                        " FOR EACH STATEMENT EXECUTE FUNCTION " + TABLE + "_release_ids()"));
+    }
+
+    /**
+     * Cria a partição DEFAULT e as partições de [agora - lookback, agora + lookahead].
+     * Com {@code lenient}, falhas em uma partição (ex.: linhas já na DEFAULT para a faixa)
+     * não impedem as demais; só vale fora de transação, porque no PostgreSQL um erro
+     * aborta a transação em andamento.
+     */
+    private Mono<Void> createPartitions(String parent, boolean lenient) {
+        LocalDateTime first = alignToGranularity(LocalDateTime.now().minus(lookback));
+        LocalDateTime last = LocalDateTime.now().plus(lookahead);
+
+        return execute("CREATE TABLE IF NOT EXISTS " + TABLE + "_default PARTITION OF " + parent + " DEFAULT")
+                .thenMany(Flux.<LocalDateTime, LocalDateTime>generate(() -> first, (start, sink) -> {
+                    if (start.isAfter(last)) {
+                        sink.complete();
+                    } else {
+                        sink.next(start);
+                    }
+                    return start.plus(granularity);
+                }))
+                .concatMap(start -> lenient
+                        ? createPartition(parent, start, start.plus(granularity)).onErrorResume(error -> Mono.empty())
+                        : createPartition(parent, start, start.plus(granularity)))
+                .then();
+    }
+
+    private Mono<Void> createPartition(String parent, LocalDateTime from, LocalDateTime to) {
+        return execute("CREATE TABLE IF NOT EXISTS " + TABLE + "_p" + PARTITION_SUFFIX.format(from) +
+                " PARTITION OF " + parent +
+                " FOR VALUES FROM ('" + BOUND.format(from) + "') TO ('" + BOUND.format(to) + "')");
+    }
+
+    private LocalDateTime alignToGranularity(LocalDateTime time) {
+        long step = granularity.toSeconds();
+        long epochSecond = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(epochSecond - Math.floorMod(epochSecond, step), 0, ZoneOffset.UTC);
+    }
+
+    private Mono<Void> execute(String sql) {
+        return databaseClient.sql(sql).then();
+    }
+}
@@ -1,5 +1,6 @@
 package br.com.davibrito.rinha_backend_2025.service;
 
+import br.com.davibrito.rinha_backend_2025.jfr.CircuitTransitionEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
@@ -45,7 +46,7 @@ public class CircuitBreakerService {
             case OPEN:
                 // Verifica se já passou o tempo de timeout para tentar novamente
                 if (hasTimeoutExpired()) {
-                    state.set(CircuitState.HALF_OPEN);
+                    transitionTo(CircuitState.HALF_OPEN, "timeout-expired");
                     return true; // Tenta uma requisição de teste
                 }
                 return false; // Continua usando fallback
@@ -70,7 +71,7 @@ public class CircuitBreakerService {
             int currentFailures = failureCount.incrementAndGet();
 
             if (currentFailures >= FAILURE_THRESHOLD) {
-                openCircuit();
+                openCircuit("failure-threshold");
             }
         } else {
             // Reset contador se a falha está fora da janela
@@ -89,8 +90,11 @@ public class CircuitBreakerService {
             closeCircuit();
         }
 
-        // Reset contador de falhas em caso de sucesso
-        failureCount.set(0);
+        // Reset contador de falhas em caso de sucesso. Só escreve se houver falhas:
+        // com vários shards, a escrita a cada sucesso disputaria a mesma linha de cache
+        if (failureCount.get() != 0) {
+            failureCount.set(0);
+        }
     }
 
     /**
@@ -101,7 +105,7 @@ public class CircuitBreakerService {
 
         if (failing && state.get() == CircuitState.CLOSED) {
             // Se health-check indica falha, abre o circuito proativamente
-            openCircuit();
+            openCircuit("health-check-failing");
         }
     }
 
@@ -125,17 +129,27 @@ public class CircuitBreakerService {
         ));
     }
 
-    private void openCircuit() {
-        state.set(CircuitState.OPEN);
+    private void openCircuit(String reason) {
+        transitionTo(CircuitState.OPEN, reason);
         lastOpenTime.set(LocalDateTime.now());
     }
 
     private void closeCircuit() {
-        state.set(CircuitState.CLOSED);
+        transitionTo(CircuitState.CLOSED, "probe-succeeded");
         failureCount.set(0);
         lastOpenTime.set(null);
     }
 
+    /**
+     * Troca o estado e registra a transição como evento JFR.
+     */
+    private void transitionTo(CircuitState next, String reason) {
+        CircuitState previous = state.getAndSet(next);
+        if (previous != next) {
+            CircuitTransitionEvent.emit(previous.name(), next.name(), reason);
+        }
+    }
+
     private boolean hasTimeoutExpired() {
         LocalDateTime openTime = lastOpenTime.get();
         return openTime != null &&
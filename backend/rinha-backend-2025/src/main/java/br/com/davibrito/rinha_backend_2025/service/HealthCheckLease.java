@@ -0,0 +1,149 @@
+package br.com.davibrito.rinha_backend_2025.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Coordenação do health-check entre réplicas ({@code rinha.healthcheck.coordination=lease}).
+ *
+ * As réplicas compartilham um arquivo pequeno mapeado em memória (volume comum). Quem
+ * segura o lock do arquivo é o líder: só ele consulta os processadores, respeitando o
+ * rate limit de uma chamada a cada 5 segundos, e publica o resultado no arquivo. As
+ * demais réplicas apenas leem. Se o líder morre, o sistema operacional libera o lock
+ * e outra réplica assume na rodada seguinte.
+ *
+ * <pre>
+ * 0  versão (seqlock, ímpar durante escrita)
+ * 8  publicado em (epoch ms)
+ * 16 default falhando (1 byte) | 17 fallback falhando (1 byte)
+ * 20 minResponseTime default | 24 minResponseTime fallback
+ * </pre>
+ */
+@Component
+@ConditionalOnProperty(name = "rinha.healthcheck.coordination", havingValue = "lease")
+public class HealthCheckLease {
+
+    private static final int FILE_SIZE = 64;
+    private static final long LEASE_POSITION = FILE_SIZE; // Região do lock fora dos dados
+
+    private static final int VERSION_OFFSET = 0;
+    private static final int PUBLISHED_AT_OFFSET = 8;
+    private static final int DEFAULT_FAILING_OFFSET = 16;
+    private static final int FALLBACK_FAILING_OFFSET = 17;
+    private static final int DEFAULT_MIN_RESPONSE_OFFSET = 20;
+    private static final int FALLBACK_MIN_RESPONSE_OFFSET = 24;
+
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile FileLock lease;
+
+    public HealthCheckLease(@Value("${rinha.healthcheck.lease-file:/var/run/rinha/health.dat}") String path) {
+        try {
+            Path file = Paths.get(path);
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível abrir o arquivo de coordenação " + path, e);
+        }
+    }
+
+    /**
+     * Tenta assumir (ou confirma) a liderança. Não bloqueia.
+     */
+    public boolean tryAcquireLeadership() {
+        if (lease != null && lease.isValid()) {
+            return true;
+        }
+        try {
+            lease = channel.tryLock(LEASE_POSITION, 1, false);
+        } catch (OverlappingFileLockException e) {
+            return true; // Lock já é deste processo
+        } catch (IOException e) {
+            lease = null;
+        }
+        return lease != null;
+    }
+
+    /**
+     * Publica o status consultado pelo líder.
+     */
+    public synchronized void publish(HealthSnapshot snapshot) {
+        long version = (long) LONG_VIEW.getVolatile(buffer, VERSION_OFFSET);
+        LONG_VIEW.setVolatile(buffer, VERSION_OFFSET, version + 1);
+        VarHandle.storeStoreFence(); // Versão ímpar visível antes de qualquer byte do status
+
+        buffer.putLong(PUBLISHED_AT_OFFSET, snapshot.publishedAtMillis());
+        buffer.put(DEFAULT_FAILING_OFFSET, (byte) (snapshot.defaultFailing() ? 1 : 0));
+        buffer.put(FALLBACK_FAILING_OFFSET, (byte) (snapshot.fallbackFailing() ? 1 : 0));
+        buffer.putInt(DEFAULT_MIN_RESPONSE_OFFSET, snapshot.defaultMinResponseTime());
+        buffer.putInt(FALLBACK_MIN_RESPONSE_OFFSET, snapshot.fallbackMinResponseTime());
+
+        LONG_VIEW.setVolatile(buffer, VERSION_OFFSET, version + 2);
+    }
+
+    /**
+     * Lê o último status publicado pelo líder, se houver um consistente.
+     */
+    public Optional<HealthSnapshot> read() {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            long before = (long) LONG_VIEW.getVolatile(buffer, VERSION_OFFSET);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait(); // Escrita em andamento
+                continue;
+            }
+            HealthSnapshot snapshot = new HealthSnapshot(
+                    buffer.getLong(PUBLISHED_AT_OFFSET),
+                    buffer.get(DEFAULT_FAILING_OFFSET) == 1,
+                    buffer.getInt(DEFAULT_MIN_RESPONSE_OFFSET),
+                    buffer.get(FALLBACK_FAILING_OFFSET) == 1,
+                    buffer.getInt(FALLBACK_MIN_RESPONSE_OFFSET));
+            VarHandle.loadLoadFence(); // Status lido por completo antes de reler a versão
+            long after = (long) LONG_VIEW.getVolatile(buffer, VERSION_OFFSET);
+            if (before == after) {
+                return snapshot.publishedAtMillis() > 0 ? Optional.of(snapshot) : Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        FileLock current = lease;
+        if (current != null && current.isValid()) {
+            current.release();
+        }
+        channel.close();
+    }
+
+    /**
+     * Status dos dois processadores publicado pelo líder.
+     */
+    public record HealthSnapshot(long publishedAtMillis,
+                                 boolean defaultFailing, int defaultMinResponseTime,
+                                 boolean fallbackFailing, int fallbackMinResponseTime) {
+    }
+}
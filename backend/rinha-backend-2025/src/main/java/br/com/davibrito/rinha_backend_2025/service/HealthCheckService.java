@@ -1,11 +1,17 @@
 package br.com.davibrito.rinha_backend_2025.service;
 
+import br.com.davibrito.rinha_backend_2025.jfr.HealthPollEvent;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -14,26 +20,49 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Serviço para monitorar o health-check dos processadores.
  * Conforme regra 3: consulta a cada 5 segundos respeitando o rate limit.
+ *
+ * Com {@code rinha.healthcheck.coordination=lease}, só a réplica que detém o
+ * {@link HealthCheckLease} consulta os processadores; as demais usam o status publicado.
  */
 @Service
 public class HealthCheckService {
 
     private final WebClient defaultHealthCheckClient;
+    private final WebClient fallbackHealthCheckClient;
     private final CircuitBreakerService circuitBreakerService;
+    private final HealthCheckLease lease;
+    private final Duration staleAfter;
 
     private final AtomicBoolean defaultProcessorFailing = new AtomicBoolean(false);
     private final AtomicInteger defaultMinResponseTime = new AtomicInteger(0);
+    private final AtomicBoolean fallbackProcessorFailing = new AtomicBoolean(false);
+    private final AtomicInteger fallbackMinResponseTime = new AtomicInteger(0);
 
     @Autowired
     public HealthCheckService(
             @Value("${rinha.healthcheck.default.url}") String defaultHealthUrl,
+            @Value("${rinha.healthcheck.fallback.url:}") String fallbackHealthUrl,
+            @Value("${rinha.healthcheck.stale-after:PT15S}") Duration staleAfter,
             CircuitBreakerService circuitBreakerService,
+            ObjectProvider<HealthCheckLease> leaseProvider,
             WebClient.Builder webClientBuilder) {
 
-        this.defaultHealthCheckClient = webClientBuilder
+        // Pool próprio: o health-check nunca espera por conexões ocupadas com pagamentos
+        ConnectionProvider provider = ConnectionProvider.builder("health-check")
+                .maxConnections(2)
+                .build();
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(HttpClient.create(provider));
+        this.defaultHealthCheckClient = webClientBuilder.clone()
                 .baseUrl(defaultHealthUrl)
+                .clientConnector(connector)
+                .build();
+        this.fallbackHealthCheckClient = fallbackHealthUrl.isBlank() ? null : webClientBuilder.clone()
+                .baseUrl(fallbackHealthUrl)
+                .clientConnector(connector)
                 .build();
         this.circuitBreakerService = circuitBreakerService;
+        this.lease = leaseProvider.getIfAvailable();
+        this.staleAfter = staleAfter;
     }
 
     /**
@@ -42,15 +71,82 @@ public class HealthCheckService {
      */
     @Scheduled(fixedDelay = 5000) // 5 segundos
     public void checkDefaultProcessorHealth() {
-        defaultHealthCheckClient
-                .get()
-                .retrieve()
-                .bodyToMono(HealthCheckResponse.class)
-                .timeout(Duration.ofSeconds(3)) // Timeout para evitar travamento
+        if (lease == null) {
+            pollDefault().subscribe();
+            return;
+        }
+        if (lease.tryAcquireLeadership()) {
+            // Líder: consulta os dois processadores e publica para as outras réplicas.
+            // Publica a cada ciclo concluído, com sucesso ou erro: uma consulta com erro
+            // também atualiza o status (default falhando), e ele não fica velho.
+            Mono.when(pollDefault(), pollFallback())
+                    .then(Mono.fromRunnable(() -> lease.publish(snapshot())))
+                    .subscribe();
+        } else {
+            applyPublishedStatus();
+        }
+    }
+
+    private Mono<Void> pollDefault() {
+        return poll(defaultHealthCheckClient, "default")
                 .doOnNext(this::updateDefaultProcessorStatus)
                 .doOnError(this::handleHealthCheckError)
                 .onErrorResume(e -> Mono.empty()) // Não propaga erro para não travar o scheduler
-                .subscribe();
+                .then();
+    }
+
+    private Mono<Void> pollFallback() {
+        if (fallbackHealthCheckClient == null) {
+            return Mono.empty();
+        }
+        return poll(fallbackHealthCheckClient, "fallback")
+                .doOnNext(response -> {
+                    fallbackProcessorFailing.set(response.failing);
+                    fallbackMinResponseTime.set(response.minResponseTime);
+                })
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Consulta o health-check de um processador, registrada como evento JFR.
+     */
+    private Mono<HealthCheckResponse> poll(WebClient client, String processor) {
+        return Mono.defer(() -> {
+            HealthPollEvent event = new HealthPollEvent();
+            event.begin();
+            return client
+                    .get()
+                    .retrieve()
+                    .bodyToMono(HealthCheckResponse.class)
+                    .timeout(Duration.ofSeconds(3)) // Timeout para evitar travamento
+                    .doOnNext(response -> event.complete(processor,
+                            response.failing ? "failing" : "healthy", response.minResponseTime))
+                    .doOnError(error -> event.complete(processor,
+                            error instanceof WebClientResponseException.TooManyRequests ? "rate-limited" : "error", 0));
+        });
+    }
+
+    /**
+     * Seguidor: aplica o status publicado pelo líder. Status mais antigo que
+     * {@code rinha.healthcheck.stale-after} é ignorado e o último conhecido é mantido.
+     */
+    private void applyPublishedStatus() {
+        lease.read()
+                .filter(snapshot -> System.currentTimeMillis() - snapshot.publishedAtMillis() <= staleAfter.toMillis())
+                .ifPresent(snapshot -> {
+                    fallbackProcessorFailing.set(snapshot.fallbackFailing());
+                    fallbackMinResponseTime.set(snapshot.fallbackMinResponseTime());
+                    updateDefaultProcessorStatus(
+                            new HealthCheckResponse(snapshot.defaultFailing(), snapshot.defaultMinResponseTime()));
+                });
+    }
+
+    private HealthCheckLease.HealthSnapshot snapshot() {
+        return new HealthCheckLease.HealthSnapshot(
+                System.currentTimeMillis(),
+                defaultProcessorFailing.get(), defaultMinResponseTime.get(),
+                fallbackProcessorFailing.get(), fallbackMinResponseTime.get());
     }
 
     /**
@@ -71,7 +167,11 @@ public class HealthCheckService {
      * Trata erros no health-check (ex: HTTP 429 - Too Many Requests).
      */
     private void handleHealthCheckError(Throwable error) {
-        // Em caso de erro no health-check, assume que o processador está falhando
+        // HTTP 429 é rate limit, não falha do processador: mantém o último status conhecido
+        if (error instanceof WebClientResponseException.TooManyRequests) {
+            return;
+        }
+        // Em caso de outro erro no health-check, assume que o processador está falhando
         defaultProcessorFailing.set(true);
         circuitBreakerService.updateHealthCheckStatus(true);
     }
@@ -90,6 +190,20 @@ public class HealthCheckService {
         return defaultMinResponseTime.get();
     }
 
+    /**
+     * Verifica se o processador fallback está falhando (exige {@code rinha.healthcheck.fallback.url}).
+     */
+    public boolean isFallbackProcessorFailing() {
+        return fallbackProcessorFailing.get();
+    }
+
+    /**
+     * Obtém o tempo mínimo de resposta do processador fallback.
+     */
+    public int getFallbackMinResponseTime() {
+        return fallbackMinResponseTime.get();
+    }
+
     /**
      * Obtém as métricas atuais do health-check.
      */
@@ -0,0 +1,127 @@
+package br.com.davibrito.rinha_backend_2025.service;
+
+import br.com.davibrito.rinha_backend_2025.dtos.PaymentRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Arquivo de transbordo da recepção ({@code rinha.intake.admission.mode=spill}).
+ *
+ * Com a fila interna sobrecarregada, os pagamentos aceitos são anexados ao arquivo
+ * (um JSON por linha) em vez de recusados, e reinjetados na fila quando ela esvazia.
+ * Cada linha é escrita no arquivo antes da resposta ao cliente: sobrevive a uma queda
+ * do processo, mas não a uma queda da máquina antes de o sistema gravar as páginas.
+ *
+ * A reinjeção troca o arquivo de escrita por um novo e lê o antigo ({@code .draining}).
+ * Se o processo cair no meio, a leitura recomeça na próxima subida; pagamentos já
+ * processados são descartados pela deduplicação do lote.
+ */
+@Component
+@ConditionalOnProperty(name = "rinha.intake.admission.mode", havingValue = "spill")
+public class IntakeSpill {
+
+    private final ObjectMapper objectMapper;
+    private final Path spillFile;
+    private final Path drainingFile;
+
+    private OutputStream output;
+    private long pending;
+
+    public IntakeSpill(
+            @Value("${rinha.intake.spill.path:/var/lib/rinha/intake-spill.ndjson}") String path,
+            ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.spillFile = Paths.get(path);
+        this.drainingFile = Paths.get(path + ".draining");
+        try {
+            if (spillFile.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(spillFile.toAbsolutePath().getParent());
+            }
+            this.pending = Files.exists(spillFile) ? Files.size(spillFile) : 0;
+            this.output = openOutput();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível abrir o arquivo de transbordo " + path, e);
+        }
+    }
+
+    /**
+     * Anexa um pagamento ao arquivo.
+     */
+    public synchronized void append(PaymentRequest paymentRequest) throws IOException {
+        byte[] line = objectMapper.writeValueAsBytes(paymentRequest);
+        output.write(line);
+        output.write('\n');
+        output.flush();
+        pending += line.length + 1;
+    }
+
+    /**
+     * Indica se há pagamentos aguardando reinjeção.
+     */
+    public synchronized boolean hasPending() {
+        return pending > 0 || Files.exists(drainingFile);
+    }
+
+    /**
+     * Entrega os pagamentos transbordados ao consumidor informado, na ordem de chegada,
+     * e apaga o arquivo lido. Novos transbordos durante a leitura vão para um arquivo novo.
+     */
+    public void replay(Replayer replayer) throws IOException, InterruptedException {
+        rotate();
+        if (!Files.exists(drainingFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(drainingFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    replayer.accept(objectMapper.readValue(line, PaymentRequest.class));
+                }
+            }
+        }
+        Files.delete(drainingFile);
+    }
+
+    private synchronized void rotate() throws IOException {
+        // Um .draining de uma leitura interrompida é lido antes do arquivo atual
+        if (pending == 0 || Files.exists(drainingFile)) {
+            return;
+        }
+        output.close();
+        Files.move(spillFile, drainingFile, StandardCopyOption.ATOMIC_MOVE);
+        output = openOutput();
+        pending = 0;
+    }
+
+    private OutputStream openOutput() throws IOException {
+        return Files.newOutputStream(spillFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * Destino dos pagamentos reinjetados. Pode bloquear até haver espaço na fila.
+     */
+    @FunctionalInterface
+    public interface Replayer {
+        void accept(PaymentRequest paymentRequest) throws InterruptedException;
+    }
+}
@@ -0,0 +1,317 @@
+package br.com.davibrito.rinha_backend_2025.service;
+
+import br.com.davibrito.rinha_backend_2025.config.Bulkheads;
+import br.com.davibrito.rinha_backend_2025.model.Cents;
+import br.com.davibrito.rinha_backend_2025.model.PaymentEntity;
+import br.com.davibrito.rinha_backend_2025.repository.PaymentLedger;
+import br.com.davibrito.rinha_backend_2025.repository.ProcessorTotals;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reconciliação do ledger com os processadores ({@code rinha.reconciliation.enabled=true}).
+ *
+ * Um timeout ou erro de rede no envio não diz se o processador cobrou o pagamento: ele
+ * pode ter cobrado e o ledger não registrar nada, ou o fallback cobrar de novo. Esses
+ * envios ambíguos, e os pagamentos cobrados cuja gravação no ledger falhou, ficam numa
+ * fila limitada. A cada ciclo, depois de
+ * {@code rinha.reconciliation.settle-after}, até {@code rinha.reconciliation.max-lookups-per-cycle}
+ * deles são consultados em {@code GET /payments/{id}} do processador tentado:
+ *
+ * - encontrado e ausente do ledger: o pagamento é gravado com o horário do processador;
+ * - encontrado e já gravado (com o outro processador): cobrança dupla, só contada (o
+ *   ledger guarda um registro por correlationId);
+ * - não encontrado: o processador não cobrou;
+ * - erro: volta para a fila, até {@code rinha.reconciliation.max-attempts} tentativas.
+ *
+ * No mesmo ciclo, os totais de {@code GET /admin/payments-summary} de cada processador são
+ * comparados com os do ledger até {@code agora - settle-after} e a diferença é publicada
+ * como métrica. A diferença só é significativa com um ledger que cubra todas as réplicas.
+ */
+@Service
+@ConditionalOnProperty(name = "rinha.reconciliation.enabled", havingValue = "true")
+public class LedgerReconciliationService {
+
+    private static final List<String> PROCESSORS = List.of("default", "fallback");
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(3);
+
+    private final ConnectionProvider connectionProvider;
+    private final Map<String, WebClient> processorClients;
+    private final PaymentLedger paymentLedger;
+    private final Bulkheads bulkheads;
+    private final String adminToken;
+    private final Duration settleAfter;
+    private final int maxLookupsPerCycle;
+    private final int maxAttempts;
+
+    private final BlockingQueue<AmbiguousPayment> ambiguousPayments;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // Processador menos ledger, por processador
+    private final Map<String, AtomicLong> requestsDrift = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> amountDriftCents = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Counter droppedAmbiguous;
+
+    public LedgerReconciliationService(
+            @Value("${rinha.reconciliation.default.url:${rinha.processor.default.url}}") String defaultUrl,
+            @Value("${rinha.reconciliation.fallback.url:${rinha.processor.fallback.url}}") String fallbackUrl,
+            @Value("${rinha.reconciliation.admin-token:123}") String adminToken,
+            @Value("${rinha.reconciliation.settle-after:PT10S}") Duration settleAfter,
+            @Value("${rinha.reconciliation.max-lookups-per-cycle:50}") int maxLookupsPerCycle,
+            @Value("${rinha.reconciliation.max-attempts:5}") int maxAttempts,
+            @Value("${rinha.reconciliation.max-pending:10000}") int maxPending,
+            PaymentLedger paymentLedger,
+            Bulkheads bulkheads,
+            MeterRegistry meterRegistry,
+            WebClient.Builder webClientBuilder) {
+
+        // Pool próprio e pequeno: a auditoria nunca disputa conexões com os pagamentos
+        this.connectionProvider = ConnectionProvider.builder("reconciliation")
+                .maxConnections(4)
+                .build();
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(HttpClient.create(connectionProvider));
+        this.processorClients = Map.of(
+                "default", webClientBuilder.clone().baseUrl(rootUrl(defaultUrl)).clientConnector(connector).build(),
+                "fallback", webClientBuilder.clone().baseUrl(rootUrl(fallbackUrl)).clientConnector(connector).build());
+        this.paymentLedger = paymentLedger;
+        this.bulkheads = bulkheads;
+        this.adminToken = adminToken;
+        this.settleAfter = settleAfter;
+        this.maxLookupsPerCycle = maxLookupsPerCycle;
+        this.maxAttempts = maxAttempts;
+        this.ambiguousPayments = new ArrayBlockingQueue<>(maxPending);
+        this.meterRegistry = meterRegistry;
+
+        for (String processor : PROCESSORS) {
+            AtomicLong requests = requestsDrift.computeIfAbsent(processor, key -> new AtomicLong());
+            AtomicLong amount = amountDriftCents.computeIfAbsent(processor, key -> new AtomicLong());
+            Gauge.builder("rinha.reconciliation.drift.requests", requests, AtomicLong::get)
+                    .description("Pagamentos no processador menos pagamentos no ledger")
+                    .tag("processor", processor)
+                    .register(meterRegistry);
+            Gauge.builder("rinha.reconciliation.drift.amount", amount, cents -> cents.get() / 100.0)
+                    .description("Valor no processador menos valor no ledger")
+                    .tag("processor", processor)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("rinha.reconciliation.ambiguous.pending", ambiguousPayments, BlockingQueue::size)
+                .register(meterRegistry);
+        this.droppedAmbiguous = Counter.builder("rinha.reconciliation.ambiguous.dropped")
+                .description("Envios ambíguos descartados com a fila de reconciliação cheia")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionProvider.dispose();
+    }
+
+    /**
+     * Indica se o erro de um envio deixa em aberto se o processador cobrou: timeout ou
+     * falha de I/O no meio da troca. Não são ambíguos a resposta HTTP de erro, o bulkhead
+     * cheio e a falha antes de conectar (conexão recusada, timeout de conexão, host
+     * desconhecido): a requisição não chegou ao processador.
+     */
+    public static boolean isAmbiguous(Throwable error) {
+        if (error instanceof TimeoutException) {
+            return true;
+        }
+        if (!(error instanceof WebClientRequestException)) {
+            return false;
+        }
+        for (Throwable cause = error.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registra um envio ambíguo, ou um pagamento cobrado que não foi gravado, para consulta
+     * posterior. Com a fila cheia, descarta.
+     */
+    public void recordAmbiguous(UUID correlationId, String processor) {
+        if (!ambiguousPayments.offer(new AmbiguousPayment(correlationId, processor, System.nanoTime(), 1))) {
+            droppedAmbiguous.increment();
+        }
+    }
+
+    /**
+     * Ciclo de reconciliação. Um ciclo não começa enquanto o anterior não terminou.
+     */
+    @Scheduled(fixedDelayString = "${rinha.reconciliation.interval:PT10S}",
+            initialDelayString = "${rinha.reconciliation.interval:PT10S}")
+    public void reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        Mono.when(resolveAmbiguous(), measureDrift())
+                .doFinally(signal -> running.set(false))
+                .subscribe();
+    }
+
+    /**
+     * Consulta os envios ambíguos mais antigos que {@code settle-after}, respeitando o
+     * limite por ciclo. Um envio mais recente só é consultado depois que o processador
+     * certamente terminou de tratá-lo.
+     */
+    Mono<Void> resolveAmbiguous() {
+        long settledBefore = System.nanoTime() - settleAfter.toNanos();
+        List<AmbiguousPayment> due = new ArrayList<>();
+        AmbiguousPayment head;
+        while (due.size() < maxLookupsPerCycle
+                && (head = ambiguousPayments.peek()) != null
+                && head.recordedAt() - settledBefore <= 0) {
+            due.add(ambiguousPayments.poll());
+        }
+        return Flux.fromIterable(due)
+                .concatMap(payment -> lookup(payment)
+                        .onErrorResume(error -> Mono.fromRunnable(() -> retryLater(payment))))
+                .then();
+    }
+
+    private Mono<Void> lookup(AmbiguousPayment payment) {
+        return processorClients.get(payment.processor())
+                .get()
+                .uri("/payments/{id}", payment.correlationId())
+                .retrieve()
+                .bodyToMono(ProcessorPayment.class)
+                .timeout(REQUEST_TIMEOUT)
+                .flatMap(found -> repair(payment, found))
+                .onErrorResume(WebClientResponseException.NotFound.class,
+                        notFound -> Mono.fromRunnable(() -> countLookup(payment.processor(), "not-found")));
+    }
+
+    /**
+     * O processador cobrou: grava no ledger se ainda não houver registro do pagamento.
+     * A gravação só acontece se o correlationId não existir, verificado pelo próprio ledger
+     * ({@link PaymentLedger#save}), então uma gravação concorrente do pipeline não gera
+     * duplicata. O pipeline nunca grava um envio ambíguo, e o processador recusa
+     * correlationId repetido; um registro existente é, portanto, a cobrança em outro processador.
+     */
+    private Mono<Void> repair(AmbiguousPayment payment, ProcessorPayment found) {
+        PaymentEntity entity = new PaymentEntity(payment.correlationId(), found.amount,
+                toLocalDateTime(found.requestedAt), payment.processor());
+        return bulkheads.persistence().execute(paymentLedger.save(entity))
+                .doOnSuccess(saved -> countLookup(payment.processor(),
+                        Boolean.TRUE.equals(saved) ? "repaired" : "double-charged"))
+                .then();
+    }
+
+    private void retryLater(AmbiguousPayment payment) {
+        if (payment.attempts() >= maxAttempts) {
+            countLookup(payment.processor(), "abandoned");
+            return;
+        }
+        countLookup(payment.processor(), "error");
+        AmbiguousPayment retry = new AmbiguousPayment(payment.correlationId(), payment.processor(),
+                System.nanoTime(), payment.attempts() + 1);
+        if (!ambiguousPayments.offer(retry)) {
+            droppedAmbiguous.increment();
+        }
+    }
+
+    /**
+     * Compara os totais de cada processador com os do ledger, até {@code agora - settle-after}.
+     */
+    Mono<Void> measureDrift() {
+        Instant to = Instant.now().minus(settleAfter);
+        Mono<Map<String, ProcessorTotals>> ledgerTotals =
+                bulkheads.persistence().execute(paymentLedger.summarize(null, toLocalDateTime(to))).cache();
+        return Flux.fromIterable(PROCESSORS)
+                .flatMap(processor -> Mono.zip(processorSummary(processor, to), ledgerTotals)
+                        .doOnNext(totals -> {
+                            ProcessorTotals recorded = totals.getT2().get(processor);
+                            requestsDrift.get(processor).set(totals.getT1().totalRequests - recorded.totalRequests());
+                            amountDriftCents.get(processor).set(totals.getT1().totalAmount - recorded.totalAmountCents());
+                        })
+                        .onErrorResume(error -> Mono.empty())) // Mantém a última medida
+                .then();
+    }
+
+    private Mono<ProcessorSummary> processorSummary(String processor, Instant to) {
+        return processorClients.get(processor)
+                .get()
+                .uri(uri -> uri.path("/admin/payments-summary").queryParam("to", to.toString()).build())
+                .header("X-Rinha-Token", adminToken)
+                .retrieve()
+                .bodyToMono(ProcessorSummary.class)
+                .timeout(REQUEST_TIMEOUT);
+    }
+
+    private void countLookup(String processor, String outcome) {
+        meterRegistry.counter("rinha.reconciliation.lookups", "processor", processor, "outcome", outcome)
+                .increment();
+    }
+
+    private static LocalDateTime toLocalDateTime(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    /**
+     * Raiz do processador a partir da URL de pagamentos ({@code http://host/payments}).
+     */
+    private static String rootUrl(String paymentsUrl) {
+        return paymentsUrl.replaceFirst("/payments/?$", "");
+    }
+
+    /**
+     * Envio sem resposta conclusiva, com o instante (System.nanoTime) do registro.
+     */
+    private record AmbiguousPayment(UUID correlationId, String processor, long recordedAt, int attempts) {
+    }
+
+    /**
+     * DTO para resposta de {@code GET /payments/{id}} dos processadores.
+     */
+    public static class ProcessorPayment {
+        public UUID correlationId;
+        @JsonDeserialize(using = Cents.Deserializer.class)
+        public long amount;
+        public Instant requestedAt;
+    }
+
+    /**
+     * DTO para resposta de {@code GET /admin/payments-summary} dos processadores.
+     */
+    public static class ProcessorSummary {
+        public long totalRequests;
+        @JsonDeserialize(using = Cents.Deserializer.class)
+        public long totalAmount;
+    }
+}
@@ -1,177 +1,640 @@
 package br.com.davibrito.rinha_backend_2025.service;
 
+import br.com.davibrito.rinha_backend_2025.config.Bulkheads;
+import br.com.davibrito.rinha_backend_2025.config.BulkheadFullException;
 import br.com.davibrito.rinha_backend_2025.dtos.PaymentRequest;
+import br.com.davibrito.rinha_backend_2025.jfr.DedupCheckEvent;
+import br.com.davibrito.rinha_backend_2025.jfr.LedgerSaveEvent;
+import br.com.davibrito.rinha_backend_2025.jfr.ProcessorCallEvent;
+import br.com.davibrito.rinha_backend_2025.jfr.QueueWaitEvent;
 import br.com.davibrito.rinha_backend_2025.model.PaymentEntity;
-import br.com.davibrito.rinha_backend_2025.repository.PaymentRepository;
+import br.com.davibrito.rinha_backend_2025.repository.PaymentLedger;
+import br.com.davibrito.rinha_backend_2025.trace.TraceRecord;
+import br.com.davibrito.rinha_backend_2025.trace.TrafficTrace;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
 
 /**
  * Serviço responsável pelo processamento assíncrono de pagamentos.
  * Implementa a lógica de escolha do processador conforme regra 2.
+ *
+ * O pipeline é dividido em {@code rinha.processing.shards} shards (padrão 1; 0 = um por
+ * núcleo disponível). Cada pagamento vai para o shard do hash do seu correlationId, e
+ * cada shard tem fila, thread consumidora, fatia das conexões com os processadores,
+ * event loops, conjunto de pagamentos em andamento e contadores próprios. Repetições
+ * de um mesmo correlationId caem sempre no mesmo shard.
  */
 @Service
 public class PaymentProcessingService {
 
-    private final WebClient defaultProcessorClient;
-    private final WebClient fallbackProcessorClient;
+    // Com a fila vazia, intervalo entre verificações de fim de sobrecarga
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    // Bulkhead cheio no envio ou na gravação: espera vaga em vez de contar falha do
+    // processador ou descartar o pagamento
+    private static final RetryBackoffSpec WAIT_FOR_SLOT = Retry.fixedDelay(Long.MAX_VALUE, Duration.ofMillis(10))
+            .filter(BulkheadFullException.class::isInstance);
+
     private final CircuitBreakerService circuitBreakerService;
-    private final PaymentRepository paymentRepository;
+    private final PaymentLedger paymentLedger;
+    private final Bulkheads bulkheads;
+    private final SojournAdmissionControl admissionControl;
+    private final IntakeSpill intakeSpill;
+    private final LedgerReconciliationService reconciliation;
+    private final TrafficTrace trafficTrace;
+
+    // Thread da reinjeção dos pagamentos transbordados (modo spill)
+    private final Scheduler spillScheduler = Schedulers.newSingle("intake-spill");
+
+    // Configurações dos micro-lotes (por shard)
+    private final int maxBatchSize;
+    private final int maxInFlightBatches;
+
+    // Vagas do ledger reservadas aos pagamentos já aceitos (fila, transbordo e envios)
+    private final long ledgerReserve;
 
-    // Fila interna para processamento assíncrono (regra 1)
-    private final BlockingQueue<PaymentRequest> paymentQueue = new LinkedBlockingQueue<>();
+    private final Shard[] shards;
 
     @Autowired
     public PaymentProcessingService(
             @Value("${rinha.processor.default.url}") String defaultUrl,
             @Value("${rinha.processor.fallback.url}") String fallbackUrl,
+            @Value("${rinha.processor.max-connections:64}") int maxConnections,
+            @Value("${rinha.processing.batch.max-size:64}") int maxBatchSize,
+            @Value("${rinha.processing.batch.max-in-flight:4}") int maxInFlightBatches,
+            @Value("${rinha.processing.queue.capacity:10000}") int queueCapacity,
+            @Value("${rinha.processing.shards:1}") int shardCount,
+            @Value("${rinha.intake.spill.reinject-interval:PT1S}") Duration reinjectInterval,
+            @Value("${rinha.intake.ledger-reserve:${rinha.processing.queue.capacity:10000}}") long ledgerReserve,
             CircuitBreakerService circuitBreakerService,
-            PaymentRepository paymentRepository,
+            PaymentLedger paymentLedger,
+            Bulkheads bulkheads,
+            SojournAdmissionControl admissionControl,
+            ObjectProvider<IntakeSpill> intakeSpillProvider,
+            ObjectProvider<LedgerReconciliationService> reconciliationProvider,
+            ObjectProvider<TrafficTrace> trafficTraceProvider,
+            MeterRegistry meterRegistry,
             WebClient.Builder webClientBuilder) {
 
-        this.defaultProcessorClient = webClientBuilder
-                .baseUrl(defaultUrl)
-                .build();
-        this.fallbackProcessorClient = webClientBuilder
-                .baseUrl(fallbackUrl)
-                .build();
         this.circuitBreakerService = circuitBreakerService;
-        this.paymentRepository = paymentRepository;
+        this.paymentLedger = paymentLedger;
+        this.bulkheads = bulkheads;
+        this.admissionControl = admissionControl;
+        this.intakeSpill = intakeSpillProvider.getIfAvailable();
+        this.reconciliation = reconciliationProvider.getIfAvailable();
+        this.trafficTrace = trafficTraceProvider.getIfAvailable();
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.ledgerReserve = ledgerReserve;
+
+        // Conexões e capacidade da fila são repartidas entre os shards
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, defaultUrl, fallbackUrl,
+                    Math.max(1, maxConnections / count),
+                    Math.max(1, queueCapacity / count),
+                    webClientBuilder);
+        }
+        registerProcessedCounters(meterRegistry);
 
-        // Inicia o processamento assíncrono da fila
-        startPaymentProcessing();
+        // Inicia o processamento assíncrono das filas
+        for (Shard shard : shards) {
+            shard.start();
+        }
+        if (intakeSpill != null) {
+            spillScheduler.schedulePeriodically(() -> reinjectSpilled(reinjectInterval),
+                    reinjectInterval.toMillis(), reinjectInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
-     * Adiciona um pagamento à fila para processamento assíncrono.
+     * Adiciona um pagamento à fila do seu shard para processamento assíncrono.
      * Conforme regra 1: não espera o processamento completo.
+     * Com a fila cheia ou sobrecarregada (ver {@link SojournAdmissionControl}), o pagamento
+     * vai para o arquivo de transbordo, se configurado, ou falha com {@link BulkheadFullException}.
+     * Também falha quando o ledger não tem mais vagas além das reservadas aos pagamentos já
+     * aceitos: um pagamento cobrado pelo processador precisa caber no ledger.
      */
     public Mono<Void> enqueuePayment(PaymentRequest paymentRequest) {
-        return Mono.fromCallable(() -> {
-            paymentQueue.offer(paymentRequest);
+        return bulkheads.intake().execute(Mono.fromCallable(() -> {
+            if (paymentLedger.remainingCapacity() <= ledgerReserve) {
+                throw new BulkheadFullException("ledger");
+            }
+            boolean admitted = admissionControl.admit()
+                    && shardFor(paymentRequest).queue.offer(new QueuedPayment(paymentRequest, System.nanoTime()));
+            if (!admitted) {
+                if (intakeSpill == null) {
+                    throw new BulkheadFullException(admissionControl.isShedding() ? "intake-sojourn" : "intake-queue");
+                }
+                intakeSpill.append(paymentRequest);
+            }
             return null;
-        }).subscribeOn(Schedulers.boundedElastic()).then();
+        })).then();
     }
 
     /**
-     * Inicia o processamento assíncrono da fila de pagamentos.
-     * Roda em background consumindo a fila continuamente.
+     * Tamanho atual das filas internas, somado entre os shards.
      */
-    private void startPaymentProcessing() {
-        Mono.fromCallable(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    PaymentRequest paymentRequest = paymentQueue.take(); // Bloqueia até ter item
-                    processPaymentInternal(paymentRequest).subscribe();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-            return null;
-        })
-        .subscribeOn(Schedulers.boundedElastic())
-        .subscribe();
+    public int getQueueSize() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.queue.size();
+        }
+        return size;
+    }
+
+    @PreDestroy
+    void stopPaymentProcessing() {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+        spillScheduler.dispose();
+    }
+
+    private Shard shardFor(PaymentRequest paymentRequest) {
+        return shards[Math.floorMod(paymentRequest.getCorrelationId().hashCode(), shards.length)];
     }
 
     /**
-     * Processa um pagamento seguindo a estratégia de escolha do processador.
-     * Implementa a regra 2: prioriza default, fallback em caso de falha.
+     * Contadores locais de pagamentos confirmados, somados entre os shards só na leitura
+     * (coleta de métricas). Refletem esta réplica; o resumo continua vindo do ledger.
      */
-    private Mono<Void> processPaymentInternal(PaymentRequest paymentRequest) {
-        // Verifica se o pagamento já foi processado (evita duplicação)
-        return paymentRepository.existsByCorrelationId(paymentRequest.getCorrelationId())
-                .flatMap(exists -> {
-                    if (exists) {
-                        return Mono.empty(); // Já processado, ignora
-                    }
-
-                    // Estratégia de escolha do processador
-                    boolean useDefault = circuitBreakerService.shouldUseDefault();
+    private void registerProcessedCounters(MeterRegistry meterRegistry) {
+        for (String processor : List.of("default", "fallback")) {
+            boolean isDefault = "default".equals(processor);
+            FunctionCounter.builder("rinha.processing.processed", this,
+                            sumOf(shard -> (isDefault ? shard.defaultCount : shard.fallbackCount).get()))
+                    .tag("processor", processor)
+                    .register(meterRegistry);
+            FunctionCounter.builder("rinha.processing.processed.amount", this,
+                            sumOf(shard -> (isDefault ? shard.defaultCents : shard.fallbackCents).get() / 100.0))
+                    .tag("processor", processor)
+                    .register(meterRegistry);
+        }
+    }
 
-                    if (useDefault) {
-                        return tryDefaultProcessor(paymentRequest);
-                    } else {
-                        return useFallbackProcessor(paymentRequest);
-                    }
-                });
+    private static ToDoubleFunction<PaymentProcessingService> sumOf(ToDoubleFunction<Shard> value) {
+        return service -> {
+            double total = 0;
+            for (Shard shard : service.shards) {
+                total += value.applyAsDouble(shard);
+            }
+            return total;
+        };
     }
 
     /**
-     * Tenta processar o pagamento no processador default.
+     * Devolve às filas os pagamentos transbordados, pausando enquanto houver
+     * sobrecarga. Roda na thread {@code intake-spill}, nunca nas dos consumidores.
      */
-    private Mono<Void> tryDefaultProcessor(PaymentRequest paymentRequest) {
-        return sendPaymentToProcessor(defaultProcessorClient, paymentRequest)
-                .flatMap(success -> {
-                    if (success) {
-                        // Sucesso no default
-                        circuitBreakerService.recordSuccess();
-                        return saveProcessedPayment(paymentRequest, "default");
-                    } else {
-                        // Falha no default - registra falha e tenta fallback
-                        circuitBreakerService.recordFailure();
-                        return useFallbackProcessor(paymentRequest);
-                    }
-                })
-                .onErrorResume(error -> {
-                    // Erro no default - registra falha e tenta fallback
-                    circuitBreakerService.recordFailure();
-                    return useFallbackProcessor(paymentRequest);
-                });
+    private void reinjectSpilled(Duration pause) {
+        if (admissionControl.isShedding() || !intakeSpill.hasPending()) {
+            return;
+        }
+        try {
+            intakeSpill.replay(paymentRequest -> {
+                while (admissionControl.isShedding()) {
+                    Thread.sleep(pause.toMillis());
+                }
+                shardFor(paymentRequest).queue.put(new QueuedPayment(paymentRequest, System.nanoTime()));
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Arquivo continua no disco; nova tentativa no próximo ciclo
+        }
     }
 
     /**
-     * Usa o processador fallback.
+     * Sem fila e sem lote em andamento em nenhum shard. O shard que pergunta segura
+     * uma vaga de lote para si.
      */
-    private Mono<Void> useFallbackProcessor(PaymentRequest paymentRequest) {
-        return sendPaymentToProcessor(fallbackProcessorClient, paymentRequest)
-                .flatMap(success -> {
-                    if (success) {
-                        return saveProcessedPayment(paymentRequest, "fallback");
-                    } else {
-                        // Falha em ambos os processadores - log do erro
-                        return Mono.empty();
-                    }
-                })
-                .onErrorResume(error -> Mono.empty()); // Não propaga erro para não travar o processamento
+    private boolean pipelineIdle(Shard caller) {
+        for (Shard shard : shards) {
+            int idlePermits = shard == caller ? maxInFlightBatches - 1 : maxInFlightBatches;
+            if (!shard.queue.isEmpty() || shard.inFlightBatches.availablePermits() != idlePermits) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Envia o pagamento para um processador específico.
+     * Tamanho do lote proporcional à fila: com carga leve os lotes têm um item
+     * (latência mínima); em rajadas a fila é repartida entre os lotes em paralelo
+     * até o limite {@code maxBatchSize}.
      */
-    private Mono<Boolean> sendPaymentToProcessor(WebClient client, PaymentRequest paymentRequest) {
-        return client
-                .post()
-                .bodyValue(paymentRequest)
-                .retrieve()
-                .toBodilessEntity()
-                .timeout(Duration.ofSeconds(5)) // Timeout para detectar lentidão
-                .map(response -> response.getStatusCode().is2xxSuccessful())
-                .onErrorReturn(false); // Qualquer erro = falha
+    private int adaptiveBatchSize(int queueDepth) {
+        int share = (queueDepth + maxInFlightBatches - 1) / maxInFlightBatches;
+        return Math.max(1, Math.min(maxBatchSize, share));
+    }
+
+    private void recordSojourn(UUID correlationId, String processor, long enqueuedAt) {
+        long now = System.nanoTime();
+        admissionControl.recordSojourn(now - enqueuedAt, now);
+        QueueWaitEvent.emit(correlationId, processor, now - enqueuedAt);
     }
 
     /**
-     * Salva o pagamento processado no banco de dados.
-     * Conforme regra 4: só salva após confirmação de sucesso.
+     * Monta a entidade do pagamento confirmado pelo processador.
      */
-    private Mono<Void> saveProcessedPayment(PaymentRequest paymentRequest, String processorUsed) {
-        PaymentEntity entity = new PaymentEntity(
+    private PaymentEntity toEntity(PaymentRequest paymentRequest, String processorUsed) {
+        return new PaymentEntity(
                 paymentRequest.getCorrelationId(),
                 paymentRequest.getAmount(),
                 LocalDateTime.now(),
                 processorUsed
         );
+    }
+
+    /**
+     * Pagamento na fila, com o instante (System.nanoTime) em que entrou. A permanência na
+     * fila termina no primeiro envio: a nova tentativa no fallback depois de uma falha no
+     * default não conta o tempo gasto na chamada que falhou.
+     */
+    private static final class QueuedPayment {
+
+        private final PaymentRequest request;
+        private final long enqueuedAt;
+        private boolean dispatched; // Envios de um mesmo pagamento são sequenciais
+
+        QueuedPayment(PaymentRequest request, long enqueuedAt) {
+            this.request = request;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        PaymentRequest request() {
+            return request;
+        }
+
+        long enqueuedAt() {
+            return enqueuedAt;
+        }
+
+        /**
+         * Marca o envio; verdadeiro só no primeiro, quando o pagamento sai da fila.
+         */
+        boolean markDispatched() {
+            boolean first = !dispatched;
+            dispatched = true;
+            return first;
+        }
+    }
 
-        return paymentRepository.save(entity)
-                .then();
+    /**
+     * Cria o conector HTTP com pool de conexões e event loop dedicados a um processador,
+     * isolando-o dos event loops do servidor e do outro processador. Pool e event loop
+     * vão para {@code resources}, para serem liberados na parada.
+     */
+    private static ReactorClientHttpConnector pooledConnector(String name, int maxConnections, int maxPendingAcquires,
+                                                              List<Disposable> resources) {
+        ConnectionProvider provider = ConnectionProvider.builder(name)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxPendingAcquires)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+        LoopResources loops = LoopResources.create(name, 1, true);
+        resources.add(provider);
+        resources.add(loops);
+        return new ReactorClientHttpConnector(HttpClient.create(provider).runOn(loops).keepAlive(true));
+    }
+
+    /**
+     * Fatia do pipeline: fila, consumidor, clientes HTTP e estado próprios.
+     */
+    private final class Shard {
+
+        private final Scheduler consumerScheduler;
+        private final WebClient defaultProcessorClient;
+        private final WebClient fallbackProcessorClient;
+        private final Semaphore inFlightBatches = new Semaphore(maxInFlightBatches);
+
+        // Pools de conexões e event loops dos clientes HTTP, liberados em stop()
+        private final List<Disposable> connectorResources = new ArrayList<>();
+
+        // Fila interna para processamento assíncrono (regra 1), com capacidade limitada
+        private final BlockingQueue<QueuedPayment> queue;
+
+        // Pagamentos entre a deduplicação e o fim do envio/gravação neste shard
+        private final Set<UUID> inProgress = ConcurrentHashMap.newKeySet();
+
+        // Contadores locais de pagamentos confirmados
+        private final AtomicLong defaultCount = new AtomicLong();
+        private final AtomicLong defaultCents = new AtomicLong();
+        private final AtomicLong fallbackCount = new AtomicLong();
+        private final AtomicLong fallbackCents = new AtomicLong();
+
+        Shard(int index, String defaultUrl, String fallbackUrl, int maxConnections, int queueCapacity,
+              WebClient.Builder webClientBuilder) {
+            // Com um shard só, mantém os nomes de threads e pools de antes do particionamento
+            String suffix = shards.length == 1 ? "" : "-" + index;
+            this.consumerScheduler = Schedulers.newSingle("payment-consumer" + suffix);
+
+            // Cada processador tem seu próprio pool de conexões keep-alive e event loop
+            int maxPendingAcquires = maxBatchSize * maxInFlightBatches;
+            this.defaultProcessorClient = webClientBuilder.clone()
+                    .baseUrl(defaultUrl)
+                    .clientConnector(pooledConnector("default-processor" + suffix, maxConnections, maxPendingAcquires,
+                            connectorResources))
+                    .build();
+            this.fallbackProcessorClient = webClientBuilder.clone()
+                    .baseUrl(fallbackUrl)
+                    .clientConnector(pooledConnector("fallback-processor" + suffix, maxConnections, maxPendingAcquires,
+                            connectorResources))
+                    .build();
+            this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * Inicia o processamento assíncrono da fila do shard.
+         * Roda em background drenando a fila em micro-lotes, com no máximo
+         * {@code maxInFlightBatches} lotes em andamento ao mesmo tempo.
+         */
+        void start() {
+            Mono.fromCallable(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        inFlightBatches.acquire();
+                        List<QueuedPayment> batch = nextBatch(); // Bloqueia até ter item
+                        processBatch(batch)
+                                .doFinally(signal -> inFlightBatches.release())
+                                .subscribe();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                return null;
+            })
+            .subscribeOn(consumerScheduler)
+            .subscribe();
+        }
+
+        void stop() {
+            consumerScheduler.dispose();
+            connectorResources.forEach(Disposable::dispose);
+        }
+
+        /**
+         * Retira o próximo lote da fila. Nunca espera o lote "encher": pega o que
+         * já estiver disponível, até o tamanho adaptativo calculado pela profundidade.
+         * Pipeline inteiro vazio e sem lotes em andamento encerra a sobrecarga.
+         */
+        private List<QueuedPayment> nextBatch() throws InterruptedException {
+            QueuedPayment first;
+            while ((first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (pipelineIdle(this)) {
+                    admissionControl.queueDrained(System.nanoTime());
+                }
+            }
+            int batchSize = adaptiveBatchSize(queue.size() + 1);
+
+            List<QueuedPayment> batch = new ArrayList<>(batchSize);
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            return batch;
+        }
+
+        /**
+         * Processa um lote seguindo a estratégia de escolha do processador.
+         * Uma decisão de roteamento e uma consulta de deduplicação por lote; os envios
+         * HTTP saem em paralelo sobre as conexões do pool.
+         */
+        private Mono<Void> processBatch(List<QueuedPayment> batch) {
+            // Estratégia de escolha do processador (regra 2), decidida uma vez por lote
+            boolean useDefault = circuitBreakerService.shouldUseDefault();
+
+            List<UUID> correlationIds = batch.stream()
+                    .map(queued -> queued.request().getCorrelationId())
+                    .toList();
+
+            // Verifica quais pagamentos já foram processados (evita duplicação)
+            return findProcessed(correlationIds)
+                    .flatMapMany(processed -> pendingPayments(batch, processed))
+                    .flatMap(queued -> (useDefault
+                            ? tryDefaultProcessor(queued)
+                            : useFallbackProcessor(queued))
+                            .flatMap(this::saveProcessedPayment)
+                            .doFinally(signal -> inProgress.remove(queued.request().getCorrelationId())),
+                            batch.size())
+                    .then()
+                    .onErrorResume(error -> Mono.empty()); // Não propaga erro para não travar o processamento
+        }
+
+        /**
+         * Consulta de deduplicação do lote, registrada como evento JFR.
+         */
+        private Mono<Set<UUID>> findProcessed(List<UUID> correlationIds) {
+            return Mono.defer(() -> {
+                DedupCheckEvent event = new DedupCheckEvent();
+                event.begin();
+                return bulkheads.persistence().execute(paymentLedger.findExistingCorrelationIds(correlationIds))
+                        .collect(Collectors.toSet())
+                        .doOnSuccess(processed -> event.complete(correlationIds.size(), processed.size(), "success"))
+                        .doOnError(error -> event.complete(correlationIds.size(), 0, "error"));
+            });
+        }
+
+        /**
+         * Remove do lote os pagamentos já processados, os repetidos dentro do próprio lote
+         * e os que ainda estão em andamento num lote anterior deste shard.
+         */
+        private Flux<QueuedPayment> pendingPayments(List<QueuedPayment> batch, Set<UUID> processed) {
+            return Flux.fromIterable(batch)
+                    .filter(queued -> !processed.contains(queued.request().getCorrelationId()))
+                    .filter(queued -> inProgress.add(queued.request().getCorrelationId()));
+        }
+
+        /**
+         * Tenta processar o pagamento no processador default.
+         */
+        private Mono<PaymentEntity> tryDefaultProcessor(QueuedPayment queued) {
+            PaymentRequest paymentRequest = queued.request();
+            return sendPaymentToProcessor(defaultProcessorClient, "default", queued)
+                    .flatMap(success -> {
+                        if (success) {
+                            // Sucesso no default
+                            circuitBreakerService.recordSuccess();
+                            return Mono.just(toEntity(paymentRequest, "default"));
+                        } else {
+                            // Falha no default - registra falha e tenta fallback
+                            circuitBreakerService.recordFailure();
+                            return useFallbackProcessor(queued);
+                        }
+                    })
+                    .onErrorResume(error -> {
+                        // Erro no default - registra falha e tenta fallback
+                        circuitBreakerService.recordFailure();
+                        return useFallbackProcessor(queued);
+                    });
+        }
+
+        /**
+         * Usa o processador fallback.
+         */
+        private Mono<PaymentEntity> useFallbackProcessor(QueuedPayment queued) {
+            PaymentRequest paymentRequest = queued.request();
+            return sendPaymentToProcessor(fallbackProcessorClient, "fallback", queued)
+                    .flatMap(success -> {
+                        if (success) {
+                            return Mono.just(toEntity(paymentRequest, "fallback"));
+                        } else {
+                            // Falha em ambos os processadores - log do erro
+                            return Mono.<PaymentEntity>empty();
+                        }
+                    })
+                    .onErrorResume(error -> Mono.empty()); // Não propaga erro para não travar o processamento
+        }
+
+        /**
+         * Envia o pagamento para um processador específico, dentro do bulkhead do processador.
+         * Bulkhead cheio não é falha do processador (não abre o circuit breaker nem desvia
+         * para o fallback): o envio espera vaga, segurando o lote, e a fila do shard cresce
+         * até o controle de admissão agir.
+         * Ao conseguir vaga no primeiro envio do pagamento, registra o tempo desde a recepção
+         * no controle de admissão.
+         * O envio é registrado como evento JFR desde o pedido de vaga, com a espera pelo
+         * bulkhead; bulkhead cheio sai com outcome próprio. Um timeout ou erro de
+         * rede no meio da troca vai para a reconciliação, se habilitada: o processador pode
+         * ter cobrado.
+         * Com a captura de tráfego ligada, a latência e o status da chamada vão para o trace.
+         */
+        private Mono<Boolean> sendPaymentToProcessor(WebClient client, String processor,
+                                                     QueuedPayment queued) {
+            PaymentRequest paymentRequest = queued.request();
+            UUID correlationId = paymentRequest.getCorrelationId();
+            Mono<ResponseEntity<Void>> send = client
+                    .post()
+                    .bodyValue(paymentRequest)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .timeout(Duration.ofSeconds(5)); // Timeout para detectar lentidão
+            return Mono.defer(() -> {
+                ProcessorCallEvent event = new ProcessorCallEvent();
+                event.begin();
+                return bulkheads.dispatch(processor)
+                        .execute(Mono.fromCallable(() -> {
+                            if (queued.markDispatched()) {
+                                recordSojourn(correlationId, processor, queued.enqueuedAt());
+                            }
+                            return System.nanoTime();
+                        }).flatMap(callStart -> send
+                                .doOnSuccess(response -> traceCall(correlationId, processor, callStart,
+                                        response.getStatusCode().value()))
+                                .doOnError(error -> traceCall(correlationId, processor, callStart,
+                                        error instanceof WebClientResponseException responseError
+                                                ? responseError.getStatusCode().value()
+                                                : TraceRecord.NO_RESPONSE))))
+                        .map(response -> response.getStatusCode().is2xxSuccessful())
+                        .doOnSuccess(success -> event.complete(correlationId, processor,
+                                Boolean.TRUE.equals(success) ? "success" : "rejected"))
+                        .doOnError(error -> {
+                            event.complete(correlationId, processor, callOutcome(error));
+                            if (reconciliation != null && LedgerReconciliationService.isAmbiguous(error)) {
+                                reconciliation.recordAmbiguous(correlationId, processor);
+                            }
+                        });
+            })
+            .retryWhen(WAIT_FOR_SLOT)
+            .onErrorReturn(false); // Demais erros = falha
+        }
+
+        /**
+         * Outcome do evento para uma chamada que terminou em erro. O {@code retrieve()} entrega
+         * as respostas não-2xx como {@link WebClientResponseException}: o processador respondeu
+         * e recusou o pagamento.
+         */
+        private static String callOutcome(Throwable error) {
+            if (error instanceof BulkheadFullException) {
+                return "bulkhead-full";
+            }
+            return error instanceof WebClientResponseException ? "rejected" : "error";
+        }
+
+        private void traceCall(UUID correlationId, String processor, long callStart, int status) {
+            if (trafficTrace != null) {
+                trafficTrace.recordProcessorCall(correlationId, processor, callStart, status);
+            }
+        }
+
+        /**
+         * Salva o pagamento processado no ledger.
+         * Conforme regra 4: só salva após confirmação de sucesso.
+         * Falhas são isoladas por pagamento para não perder o restante do lote.
+         * O processador já cobrou: com o bulkhead de persistência cheio a gravação espera
+         * vaga, e se falhar o pagamento vai para a reconciliação (se habilitada), que o
+         * encontra no processador e grava.
+         */
+        private Mono<Void> saveProcessedPayment(PaymentEntity entity) {
+            return Mono.defer(() -> {
+                LedgerSaveEvent event = new LedgerSaveEvent();
+                event.begin();
+                return bulkheads.persistence().execute(paymentLedger.save(entity))
+                        .doOnSuccess(saved -> {
+                            boolean recorded = Boolean.TRUE.equals(saved);
+                            event.complete(entity.getCorrelationId(), entity.getProcessorUsed(),
+                                    recorded ? "success" : "duplicate");
+                            if (recorded) {
+                                countProcessed(entity);
+                            }
+                        })
+                        .doOnError(error -> event.complete(entity.getCorrelationId(), entity.getProcessorUsed(),
+                                error instanceof BulkheadFullException ? "bulkhead-full" : "error"))
+                        .then();
+            })
+            .retryWhen(WAIT_FOR_SLOT)
+            .onErrorResume(error -> {
+                if (reconciliation != null) {
+                    reconciliation.recordAmbiguous(entity.getCorrelationId(), entity.getProcessorUsed());
+                }
+                return Mono.empty();
+            });
+        }
+
+        private void countProcessed(PaymentEntity entity) {
+            if ("default".equals(entity.getProcessorUsed())) {
+                defaultCount.incrementAndGet();
+                defaultCents.addAndGet(entity.getAmountCents());
+            } else {
+                fallbackCount.incrementAndGet();
+                fallbackCents.addAndGet(entity.getAmountCents());
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,8 +3,13 @@ package br.com.davibrito.rinha_backend_2025.service;
 import br.com.davibrito.rinha_backend_2025.dtos.PaymentRequest;
 import br.com.davibrito.rinha_backend_2025.dtos.PaymentSummaryResponse;
 import br.com.davibrito.rinha_backend_2025.model.ProcessedPayment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 /**
  * Interface para o serviço de pagamentos.
  */
@@ -25,6 +30,28 @@ public interface PaymentService {
      */
     Mono<PaymentSummaryResponse> getPaymentsSummary();
 
+    /**
+     * Obtém o resumo dos pagamentos processados dentro de uma faixa de datas.
+     * 
+     * @param from início da faixa (inclusive), ou null para sem limite inferior
+     * @param to fim da faixa (inclusive), ou null para sem limite superior
+     * @return o resumo de pagamentos
+     */
+    Mono<PaymentSummaryResponse> getPaymentsSummary(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Exporta os pagamentos processados como NDJSON (um objeto JSON por linha), escrito
+     * direto nos buffers da resposta, linha a linha conforme o cliente consome.
+     * 
+     * @param processor "default", "fallback" ou null para os dois
+     * @param from início da faixa (inclusive), ou null para sem limite inferior
+     * @param to fim da faixa (inclusive), ou null para sem limite superior
+     * @param bufferFactory fábrica de buffers da resposta
+     * @return as linhas do NDJSON
+     */
+    Flux<DataBuffer> exportPayments(String processor, LocalDateTime from, LocalDateTime to,
+                                    DataBufferFactory bufferFactory);
+
     /**
      * Remove todos os pagamentos processados (usado pelos testes).
      * 
@@ -1,15 +1,23 @@
 package br.com.davibrito.rinha_backend_2025.service;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.stereotype.Service;
 
+import br.com.davibrito.rinha_backend_2025.config.Bulkheads;
 import br.com.davibrito.rinha_backend_2025.dtos.PaymentRequest;
 import br.com.davibrito.rinha_backend_2025.dtos.PaymentSummaryResponse;
+import br.com.davibrito.rinha_backend_2025.model.Cents;
 import br.com.davibrito.rinha_backend_2025.model.ProcessedPayment;
-import br.com.davibrito.rinha_backend_2025.repository.PaymentRepository;
+import br.com.davibrito.rinha_backend_2025.repository.PaymentLedger;
+import br.com.davibrito.rinha_backend_2025.repository.ProcessorTotals;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -19,13 +27,16 @@ import reactor.core.publisher.Mono;
 public class PaymentServiceImpl implements PaymentService {
 
     private final PaymentProcessingService paymentProcessingService;
-    private final PaymentRepository paymentRepository;
+    private final PaymentLedger paymentLedger;
+    private final Bulkheads bulkheads;
 
     @Autowired
     public PaymentServiceImpl(PaymentProcessingService paymentProcessingService, 
-                             PaymentRepository paymentRepository) {
+                             PaymentLedger paymentLedger,
+                             Bulkheads bulkheads) {
         this.paymentProcessingService = paymentProcessingService;
-        this.paymentRepository = paymentRepository;
+        this.paymentLedger = paymentLedger;
+        this.bulkheads = bulkheads;
     }
 
     @Override
@@ -46,36 +57,50 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     public Mono<PaymentSummaryResponse> getPaymentsSummary() {
-        // Busca totais do processador default
-        Mono<PaymentSummaryResponse.ProcessorSummary> defaultSummary = 
-                Mono.zip(
-                    paymentRepository.countDefaultProcessorRequests(),
-                    paymentRepository.sumDefaultProcessorAmount()
-                )
-                .map(tuple -> new PaymentSummaryResponse.ProcessorSummary(
-                    tuple.getT1(), 
-                    BigDecimal.valueOf(tuple.getT2())
-                ));
+        return getPaymentsSummary(null, null);
+    }
+
+    @Override
+    public Mono<PaymentSummaryResponse> getPaymentsSummary(LocalDateTime from, LocalDateTime to) {
+        // Totais dos dois processadores em uma consulta, isolada no bulkhead de leitura
+        return bulkheads.summary().execute(paymentLedger.summarize(from, to)
+                .map(totals -> new PaymentSummaryResponse(
+                        processorSummary(totals.get("default")),
+                        processorSummary(totals.get("fallback")))));
+    }
 
-        // Busca totais do processador fallback
-        Mono<PaymentSummaryResponse.ProcessorSummary> fallbackSummary = 
-                Mono.zip(
-                    paymentRepository.countFallbackProcessorRequests(),
-                    paymentRepository.sumFallbackProcessorAmount()
-                )
-                .map(tuple -> new PaymentSummaryResponse.ProcessorSummary(
-                    tuple.getT1(), 
-                    BigDecimal.valueOf(tuple.getT2())
-                ));
+    private static PaymentSummaryResponse.ProcessorSummary processorSummary(ProcessorTotals totals) {
+        return new PaymentSummaryResponse.ProcessorSummary(totals.totalRequests(), totals.totalAmountCents());
+    }
+
+    @Override
+    public Flux<DataBuffer> exportPayments(String processor, LocalDateTime from, LocalDateTime to,
+                                           DataBufferFactory bufferFactory) {
+        // Leitura longa, isolada no bulkhead de exportação
+        return bulkheads.export().execute(paymentLedger.export(processor, from, to,
+                (correlationId, amountCents, processedAt, processorUsed) ->
+                        exportLine(bufferFactory, correlationId, amountCents, processedAt, processorUsed)));
+    }
 
-        // Combina ambos os resultados
-        return Mono.zip(defaultSummary, fallbackSummary)
-                .map(tuple -> new PaymentSummaryResponse(tuple.getT1(), tuple.getT2()));
+    /**
+     * Escreve uma linha do NDJSON: {"correlationId":...,"amount":...,"processedAt":...,"processor":...}.
+     * processedAt sai como instante UTC, no mesmo formato aceito pelo resumo.
+     */
+    private static DataBuffer exportLine(DataBufferFactory bufferFactory, UUID correlationId, long amountCents,
+                                         LocalDateTime processedAt, String processor) {
+        StringBuilder line = new StringBuilder(128)
+                .append("{\"correlationId\":\"").append(correlationId)
+                .append("\",\"amount\":");
+        Cents.appendTo(line, amountCents);
+        line.append(",\"processedAt\":\"").append(processedAt.atZone(ZoneId.systemDefault()).toInstant())
+                .append("\",\"processor\":\"").append(processor)
+                .append("\"}\n");
+        return bufferFactory.allocateBuffer(line.length()).write(line, StandardCharsets.UTF_8);
     }
 
     @Override
     public Mono<Void> purgeAllPayments() {
-        // Remove todos os pagamentos do banco de dados
-        return paymentRepository.deleteAll();
+        // Remove todos os pagamentos gravados
+        return bulkheads.persistence().execute(paymentLedger.purge());
     }
 }
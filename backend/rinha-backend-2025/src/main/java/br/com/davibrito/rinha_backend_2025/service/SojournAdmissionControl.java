@@ -0,0 +1,101 @@
+package br.com.davibrito.rinha_backend_2025.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controle de admissão da fila interna pelo tempo de permanência (sojourn), no estilo CoDel.
+ *
+ * Cada pagamento informa quanto tempo esperou entre a recepção e o início do envio ao
+ * processador (fila interna e espera por conexão dentro do lote). Se o menor tempo
+ * observado num intervalo ({@code rinha.intake.admission.interval}) passa do alvo
+ * ({@code rinha.intake.admission.target}), existe fila parada: a recepção passa a
+ * recusar ou adiar pagamentos. Volta ao normal quando um intervalo fecha com o mínimo
+ * abaixo do alvo ou quando a fila esvazia.
+ *
+ * Usar o mínimo (e não a média ou o tamanho da fila) ignora rajadas curtas, que a fila
+ * absorve sozinha, e só reage a atraso persistente.
+ */
+@Component
+public class SojournAdmissionControl {
+
+    private final boolean enabled;
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final Timer sojourn;
+
+    // Protegidos pelo monitor: o tempo é registrado por várias threads de envio
+    private long intervalEnd;
+    private long minSojourn = Long.MAX_VALUE;
+
+    private volatile boolean shedding;
+
+    public SojournAdmissionControl(
+            @Value("${rinha.intake.admission.mode:off}") String mode,
+            @Value("${rinha.intake.admission.target:PT0.2S}") Duration target,
+            @Value("${rinha.intake.admission.interval:PT1S}") Duration interval,
+            MeterRegistry meterRegistry) {
+        this.enabled = !"off".equalsIgnoreCase(mode);
+        this.targetNanos = target.toNanos();
+        this.intervalNanos = interval.toNanos();
+        this.intervalEnd = System.nanoTime() + intervalNanos;
+
+        this.sojourn = Timer.builder("rinha.intake.sojourn")
+                .description("Tempo dos pagamentos na fila interna")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("rinha.intake.shedding", this, control -> control.isShedding() ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Indica se a recepção deve aceitar um novo pagamento na fila.
+     */
+    public boolean admit() {
+        return !shedding;
+    }
+
+    public boolean isShedding() {
+        return shedding;
+    }
+
+    /**
+     * Registra o tempo de espera de um pagamento que conseguiu vaga para envio ao processador.
+     * Um reenvio ao fallback depois de falha no default gera uma segunda medida.
+     */
+    public void recordSojourn(long sojournNanos, long now) {
+        sojourn.record(sojournNanos, TimeUnit.NANOSECONDS);
+        updateMinimum(sojournNanos, now);
+    }
+
+    private synchronized void updateMinimum(long sojournNanos, long now) {
+        if (sojournNanos < minSojourn) {
+            minSojourn = sojournNanos;
+        }
+        if (now - intervalEnd >= 0) {
+            closeInterval(now);
+        }
+    }
+
+    /**
+     * O consumidor encontrou a fila vazia e nenhum lote em andamento: não há fila parada.
+     */
+    public synchronized void queueDrained(long now) {
+        minSojourn = 0;
+        closeInterval(now);
+    }
+
+    private void closeInterval(long now) {
+        if (enabled) {
+            shedding = minSojourn > targetNanos;
+        }
+        minSojourn = Long.MAX_VALUE;
+        intervalEnd = now + intervalNanos;
+    }
+}
@@ -0,0 +1,23 @@
+package br.com.davibrito.rinha_backend_2025.trace;
+
+import java.util.UUID;
+
+/**
+ * Registro lido de um trace de tráfego ({@link TrafficTrace}).
+ *
+ * @param type {@link #ARRIVAL} ou {@link #PROCESSOR_CALL}
+ * @param offsetNanos instante desde o início da captura (chegada, ou início da chamada)
+ * @param correlationId pagamento
+ * @param amountCents valor, nas chegadas
+ * @param processor "default" ou "fallback", nas chamadas
+ * @param latencyNanos duração da chamada ao processador
+ * @param status status HTTP da resposta do processador; {@link #NO_RESPONSE} para timeout ou erro de rede
+ */
+public record TraceRecord(int type, long offsetNanos, UUID correlationId, long amountCents,
+                          String processor, long latencyNanos, int status) {
+
+    public static final int ARRIVAL = 1;
+    public static final int PROCESSOR_CALL = 2;
+
+    public static final int NO_RESPONSE = 0;
+}
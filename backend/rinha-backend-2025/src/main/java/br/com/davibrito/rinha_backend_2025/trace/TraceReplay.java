@@ -0,0 +1,270 @@
+package br.com.davibrito.rinha_backend_2025.trace;
+
+import br.com.davibrito.rinha_backend_2025.model.Cents;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reprodução de traces capturados por {@link TrafficTrace}. Ferramenta de linha de comando,
+ * fora do contexto Spring.
+ *
+ * Sobe dois processadores simulados (default e fallback) que respondem a cada pagamento
+ * com a latência e o status gravados para aquele correlationId e processador, e reenvia
+ * as chegadas ao serviço com os mesmos intervalos do trace (divididos por {@code speed}).
+ * O serviço sob teste deve apontar {@code rinha.processor.*.url} e
+ * {@code rinha.healthcheck.default.url} para os simulados. Ao final, imprime a
+ * distribuição da latência de {@code POST /payments} vista pelo cliente.
+ *
+ * Os envios começam quando o serviço responde e depois de {@code warmup} segundos (padrão 6,
+ * mais que um ciclo de health-check), para que o serviço já veja os simulados saudáveis.
+ * Como o serviço processa em background, os simulados só param sem chamadas em andamento
+ * e depois de {@link #DRAIN_QUIET} sem chamadas novas, e o relatório conta as chamadas gravadas que não se
+ * repetiram (roteamento diferente do capturado).
+ *
+ * <pre>
+ * TraceReplay &lt;trace[,trace...]&gt; [url] [porta-default] [porta-fallback] [speed] [warmup]
+ * </pre>
+ *
+ * Vários traces (um por réplica) são intercalados pelo instante de início de cada captura.
+ */
+public final class TraceReplay {
+
+    private static final Pattern CORRELATION_ID = Pattern.compile("\"correlationId\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String PROCESSED = "{\"message\":\"payment processed successfully\"}";
+    private static final String HEALTHY = "{\"failing\":false,\"minResponseTime\":0}";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration DRAIN_QUIET = Duration.ofSeconds(3);
+
+    // Instante (System.nanoTime) da última chamada recebida pelos processadores simulados
+    private static final AtomicLong lastProcessorCall = new AtomicLong(System.nanoTime());
+    private static final AtomicInteger processorCallsInFlight = new AtomicInteger();
+
+    private TraceReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Uso: TraceReplay <trace[,trace...]> [url] [porta-default] [porta-fallback] [speed] [warmup]");
+            System.exit(2);
+        }
+        URI target = URI.create(args.length > 1 ? args[1] : "http://localhost:9999/api/payments");
+        int defaultPort = args.length > 2 ? Integer.parseInt(args[2]) : 8001;
+        int fallbackPort = args.length > 3 ? Integer.parseInt(args[3]) : 8002;
+        double speed = args.length > 4 ? Double.parseDouble(args[4]) : 1.0;
+        long warmupSeconds = args.length > 5 ? Long.parseLong(args[5]) : 6;
+
+        List<TraceRecord> records = readAll(args[0].split(","));
+        List<TraceRecord> arrivals = new ArrayList<>();
+        Map<String, Queue<TraceRecord>> calls = new ConcurrentHashMap<>();
+        for (TraceRecord record : records) {
+            if (record.type() == TraceRecord.ARRIVAL) {
+                arrivals.add(record);
+            } else {
+                calls.computeIfAbsent(callKey(record.correlationId().toString(), record.processor()),
+                        key -> new ConcurrentLinkedQueue<>()).add(record);
+            }
+        }
+        arrivals.sort(Comparator.comparingLong(TraceRecord::offsetNanos));
+        System.out.printf("Trace: %d chegadas, %d chamadas a processadores%n",
+                arrivals.size(), records.size() - arrivals.size());
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        DisposableServer defaultProcessor = startProcessor("default", defaultPort, calls);
+        DisposableServer fallbackProcessor = startProcessor("fallback", fallbackPort, calls);
+        try (HttpClient client = HttpClient.newBuilder().executor(executor).build()) {
+            awaitTarget(client, target);
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            drive(client, target, arrivals, speed);
+            awaitQuietProcessors();
+            long pendingCalls = calls.values().stream().mapToLong(Queue::size).sum();
+            System.out.printf("Chamadas gravadas que não se repetiram: %d%n", pendingCalls);
+        } finally {
+            defaultProcessor.disposeNow();
+            fallbackProcessor.disposeNow();
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<TraceRecord> readAll(String[] paths) throws IOException {
+        List<TraceRecord> merged = new ArrayList<>();
+        long earliest = Long.MAX_VALUE;
+        long[] startedAt = new long[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            startedAt[i] = TrafficTrace.startedAtMillis(Paths.get(paths[i]));
+            earliest = Math.min(earliest, startedAt[i]);
+        }
+        for (int i = 0; i < paths.length; i++) {
+            long shift = TimeUnit.MILLISECONDS.toNanos(startedAt[i] - earliest);
+            for (TraceRecord record : TrafficTrace.read(Paths.get(paths[i]))) {
+                merged.add(shift == 0 ? record : new TraceRecord(record.type(), record.offsetNanos() + shift,
+                        record.correlationId(), record.amountCents(), record.processor(),
+                        record.latencyNanos(), record.status()));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Processador simulado. Pagamento sem chamada gravada responde 200 imediatamente;
+     * chamada gravada sem resposta (timeout ou erro de rede) fecha a conexão após a latência.
+     */
+    private static DisposableServer startProcessor(String processor, int port, Map<String, Queue<TraceRecord>> calls) {
+        return HttpServer.create()
+                .port(port)
+                .route(routes -> routes
+                        .get("/payments/service-health", (request, response) -> json(response, HEALTHY))
+                        .post("/payments", (request, response) -> request.receive()
+                                .aggregate()
+                                .asString(StandardCharsets.UTF_8)
+                                .flatMap(body -> respondAsRecorded(response, recordedCall(calls, processor, body)))
+                                .doFirst(processorCallsInFlight::incrementAndGet)
+                                .doFinally(signal -> {
+                                    lastProcessorCall.set(System.nanoTime());
+                                    processorCallsInFlight.decrementAndGet();
+                                })))
+                .bindNow();
+    }
+
+    private static TraceRecord recordedCall(Map<String, Queue<TraceRecord>> calls, String processor, String body) {
+        Matcher matcher = CORRELATION_ID.matcher(body);
+        Queue<TraceRecord> recorded = matcher.find() ? calls.get(callKey(matcher.group(1), processor)) : null;
+        return recorded != null ? recorded.poll() : null;
+    }
+
+    private static Mono<Void> respondAsRecorded(HttpServerResponse response, TraceRecord call) {
+        if (call == null) {
+            return json(response, PROCESSED);
+        }
+        return Mono.delay(Duration.ofNanos(call.latencyNanos()))
+                .then(Mono.defer(() -> {
+                    if (call.status() == TraceRecord.NO_RESPONSE) {
+                        response.withConnection(Connection::dispose);
+                        return Mono.empty();
+                    }
+                    return call.status() / 100 == 2
+                            ? json(response.status(call.status()), PROCESSED)
+                            : response.status(call.status()).send().then();
+                }));
+    }
+
+    private static Mono<Void> json(HttpServerResponse response, String body) {
+        return response.header("Content-Type", "application/json")
+                .sendString(Mono.just(body))
+                .then();
+    }
+
+    /**
+     * Espera o serviço aceitar conexões (qualquer resposta HTTP serve).
+     */
+    private static void awaitTarget(HttpClient client, URI target) throws InterruptedException {
+        HttpRequest probe = HttpRequest.newBuilder(target).timeout(Duration.ofSeconds(1)).GET().build();
+        while (true) {
+            try {
+                client.send(probe, HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (IOException e) {
+                System.out.println("Aguardando " + target + " ...");
+                TimeUnit.SECONDS.sleep(1);
+            }
+        }
+    }
+
+    /**
+     * Espera o serviço terminar o processamento em background: nenhuma chamada aos
+     * simulados em andamento nem terminada nos últimos {@link #DRAIN_QUIET}.
+     */
+    private static void awaitQuietProcessors() throws InterruptedException {
+        while (processorCallsInFlight.get() > 0
+                || System.nanoTime() - lastProcessorCall.get() < DRAIN_QUIET.toNanos()) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    /**
+     * Reenvia as chegadas nos instantes gravados e imprime o resultado.
+     */
+    private static void drive(HttpClient client, URI target, List<TraceRecord> arrivals, double speed) {
+        long[] latencies = new long[arrivals.size()];
+        Map<Integer, Integer> statuses = new TreeMap<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>(arrivals.size());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < arrivals.size(); i++) {
+            TraceRecord arrival = arrivals.get(i);
+            long due = start + (long) (arrival.offsetNanos() / speed);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String body = "{\"correlationId\":\"" + arrival.correlationId() + "\",\"amount\":"
+                    + Cents.format(arrival.amountCents()) + "}";
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            int index = i;
+            long sentAt = System.nanoTime();
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        latencies[index] = System.nanoTime() - sentAt;
+                        synchronized (statuses) {
+                            statuses.merge(error == null ? response.statusCode() : 0, 1, Integer::sum);
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("Reenviados %d pagamentos em %.1f s (speed %.2f)%n",
+                arrivals.size(), elapsed / 1e9, speed);
+        System.out.println("Status (0 = sem resposta): " + statuses);
+        if (latencies.length > 0) {
+            System.out.printf("Latência POST /payments: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, máx %.2f ms%n",
+                    percentile(latencies, 0.5), percentile(latencies, 0.9),
+                    percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static String callKey(String correlationId, String processor) {
+        return correlationId + '|' + processor;
+    }
+}
@@ -0,0 +1,217 @@
+package br.com.davibrito.rinha_backend_2025.trace;
+
+import br.com.davibrito.rinha_backend_2025.dtos.PaymentRequest;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captura do tráfego em arquivo mapeado em memória ({@code rinha.trace.enabled=true}),
+ * para reprodução com {@link TraceReplay}.
+ *
+ * Registra cada chegada em {@code POST /payments} e cada chamada a um processador, em
+ * registros binários de tamanho fixo. Cada escrita reserva a posição com um incremento
+ * atômico no cabeçalho e grava o registro direto nas páginas mapeadas: sem locks, sem
+ * alocação e sem chamadas de sistema no caminho do pagamento. O arquivo é recriado a
+ * cada subida, e o da subida anterior é preservado com o instante do início dele como
+ * sufixo ({@code rinha-trace.bin.<epoch ms>}); com ele cheio, os registros seguintes são
+ * descartados e contados.
+ *
+ * <pre>
+ * Cabeçalho (64 bytes)
+ * 0  magic "RTRC" | 4 versão | 8 posições reservadas | 16 início (epoch ms)
+ *
+ * Registro (40 bytes)
+ * 0  instante desde o início (ns)
+ * 8  correlationId (msb) | 16 correlationId (lsb)
+ * 24 valor em centavos (chegada) ou latência em ns (chamada)
+ * 32 tipo (1 byte) | 33 processador (1 byte) | 34 status HTTP (2 bytes)
+ * 36 reservado
+ * </pre>
+ *
+ * Os bytes 32 a 35 são escritos por último, com release: um leitor que os encontra
+ * preenchidos vê o registro inteiro. Registro com tipo zero ainda não foi concluído.
+ */
+@Component
+@ConditionalOnProperty(name = "rinha.trace.enabled", havingValue = "true")
+public class TrafficTrace {
+
+    private static final int MAGIC = 0x43525452; // "RTRC" em little-endian
+    private static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 40;
+
+    private static final int RESERVED_OFFSET = 8;
+    private static final int STARTED_AT_OFFSET = 16;
+    private static final int TAIL_OFFSET = 32;
+
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_VIEW =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private final long startedAt = System.nanoTime();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public TrafficTrace(
+            @Value("${rinha.trace.path:/tmp/rinha-trace.bin}") String path,
+            @Value("${rinha.trace.capacity:1000000}") int capacity,
+            MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        try {
+            Path file = Paths.get(path);
+            if (file.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+            }
+            rotate(file);
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível criar o arquivo de trace " + path, e);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(STARTED_AT_OFFSET, System.currentTimeMillis());
+
+        Gauge.builder("rinha.trace.records", this, trace -> trace.recorded())
+                .register(meterRegistry);
+        Gauge.builder("rinha.trace.dropped", dropped, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra a chegada de um pagamento na API.
+     */
+    public void recordArrival(PaymentRequest paymentRequest) {
+        write(System.nanoTime(), paymentRequest.getCorrelationId(), paymentRequest.getAmount(),
+                TraceRecord.ARRIVAL, 0, 0);
+    }
+
+    /**
+     * Registra uma chamada a um processador, iniciada em {@code startedAtNanos} (System.nanoTime).
+     * Status {@link TraceRecord#NO_RESPONSE} indica timeout ou erro de rede.
+     */
+    public void recordProcessorCall(UUID correlationId, String processor, long startedAtNanos, int status) {
+        write(startedAtNanos, correlationId, System.nanoTime() - startedAtNanos,
+                TraceRecord.PROCESSOR_CALL, "fallback".equals(processor) ? 1 : 0, status);
+    }
+
+    private void write(long atNanos, UUID correlationId, long value, int type, int processor, int status) {
+        long index = (long) LONG_VIEW.getAndAdd(buffer, RESERVED_OFFSET, 1L);
+        if (index >= capacity) {
+            dropped.incrementAndGet();
+            return;
+        }
+        int offset = (int) (HEADER_SIZE + index * RECORD_SIZE);
+        buffer.putLong(offset, atNanos - startedAt);
+        buffer.putLong(offset + 8, correlationId.getMostSignificantBits());
+        buffer.putLong(offset + 16, correlationId.getLeastSignificantBits());
+        buffer.putLong(offset + 24, value);
+        INT_VIEW.setRelease(buffer, offset + TAIL_OFFSET, type | processor << 8 | (status & 0xFFFF) << 16);
+    }
+
+    private long recorded() {
+        return Math.min(capacity, (long) LONG_VIEW.getVolatile(buffer, RESERVED_OFFSET));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Renomeia a captura da subida anterior, se houver, para não sobrescrevê-la. O sufixo é
+     * o início da captura, ou a última modificação se o arquivo não for um trace.
+     */
+    private static void rotate(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long previousStart;
+        try {
+            previousStart = startedAtMillis(file);
+        } catch (IOException e) {
+            previousStart = Files.getLastModifiedTime(file).toMillis();
+        }
+        Files.move(file, file.resolveSibling(file.getFileName() + "." + previousStart),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Instante (epoch ms) do início da captura de um trace.
+     */
+    public static long startedAtMillis(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            return map(file, path).getLong(STARTED_AT_OFFSET);
+        }
+    }
+
+    /**
+     * Lê os registros concluídos de um trace, na ordem em que as posições foram reservadas.
+     */
+    public static List<TraceRecord> read(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer trace = map(file, path);
+            long available = (file.size() - HEADER_SIZE) / RECORD_SIZE;
+            long count = Math.min(available, trace.getLong(RESERVED_OFFSET));
+
+            List<TraceRecord> records = new ArrayList<>((int) count);
+            for (long index = 0; index < count; index++) {
+                int offset = (int) (HEADER_SIZE + index * RECORD_SIZE);
+                int tail = trace.getInt(offset + TAIL_OFFSET);
+                int type = tail & 0xFF;
+                if (type == 0) {
+                    continue; // Escrita interrompida pela parada do processo
+                }
+                UUID correlationId = new UUID(trace.getLong(offset + 8), trace.getLong(offset + 16));
+                long value = trace.getLong(offset + 24);
+                boolean arrival = type == TraceRecord.ARRIVAL;
+                records.add(new TraceRecord(type, trace.getLong(offset), correlationId,
+                        arrival ? value : 0,
+                        arrival ? null : ((tail >>> 8 & 0xFF) == 1 ? "fallback" : "default"),
+                        arrival ? 0 : value,
+                        tail >>> 16));
+            }
+            return records;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel file, Path path) throws IOException {
+        if (file.size() < HEADER_SIZE) {
+            throw new IOException("Arquivo não é um trace: " + path);
+        }
+        MappedByteBuffer trace = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        trace.order(ByteOrder.LITTLE_ENDIAN);
+        if (trace.getInt(0) != MAGIC || trace.getInt(4) != VERSION) {
+            throw new IOException("Arquivo não é um trace da versão " + VERSION + ": " + path);
+        }
+        return trace;
+    }
+}
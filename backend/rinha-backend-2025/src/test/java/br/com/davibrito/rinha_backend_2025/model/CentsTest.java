@@ -0,0 +1,66 @@
+package br.com.davibrito.rinha_backend_2025.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CentsTest {
+
+    @Test
+    void parsesUsualAmounts() {
+        assertThat(Cents.parse("19.90")).isEqualTo(1990);
+        assertThat(Cents.parse("19.9")).isEqualTo(1990);
+        assertThat(Cents.parse("19")).isEqualTo(1900);
+        assertThat(Cents.parse("0.01")).isEqualTo(1);
+    }
+
+    @Test
+    void addsDecimalsExactly() {
+        assertThat(Cents.parse("0.1") + Cents.parse("0.2")).isEqualTo(Cents.parse("0.3"));
+        assertThat(Cents.format(Cents.parse("0.1") + Cents.parse("0.2"))).isEqualTo("0.30");
+    }
+
+    @Test
+    void roundsThreeDigitFractionHalfEven() {
+        assertThat(Cents.parse("19.900")).isEqualTo(1990);
+        assertThat(Cents.parse("19.905")).isEqualTo(1990);
+        assertThat(Cents.parse("19.915")).isEqualTo(1992);
+        assertThat(Cents.parse("19.906")).isEqualTo(1991);
+    }
+
+    @Test
+    void parsesAndFormatsNegativeValues() {
+        assertThat(Cents.parse("-19.90")).isEqualTo(-1990);
+        assertThat(Cents.format(-1990)).isEqualTo("-19.90");
+        assertThat(Cents.format(-5)).isEqualTo("-0.05");
+    }
+
+    @Test
+    void parsesExponentNotation() {
+        assertThat(Cents.parse("1.5e2")).isEqualTo(15000);
+        assertThat(Cents.parse("1E-2")).isEqualTo(1);
+    }
+
+    @Test
+    void acceptsLargestValuesThatFitInLong() {
+        assertThat(Cents.parse("9999999999999999.99")).isEqualTo(999999999999999999L);
+        assertThat(Cents.parse("92233720368547758.07")).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void rejectsValuesThatOverflowLong() {
+        assertThatThrownBy(() -> Cents.parse("99999999999999999.99"))
+                .isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> Cents.parse("92233720368547758.08"))
+                .isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void formatsWithTwoDecimals() {
+        assertThat(Cents.format(0)).isEqualTo("0.00");
+        assertThat(Cents.format(5)).isEqualTo("0.05");
+        assertThat(Cents.format(1990)).isEqualTo("19.90");
+        assertThat(Cents.format(Long.MAX_VALUE)).isEqualTo("92233720368547758.07");
+    }
+}
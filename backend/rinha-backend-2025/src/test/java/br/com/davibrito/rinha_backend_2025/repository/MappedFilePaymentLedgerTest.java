@@ -0,0 +1,113 @@
+package br.com.davibrito.rinha_backend_2025.repository;
+
+import br.com.davibrito.rinha_backend_2025.model.PaymentEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ledger mmap com processed_at fora de ordem: horários gravados sem alteração e somas por
+ * faixa iguais às de uma contagem direta, atravessando vários blocos de snapshot.
+ */
+class MappedFilePaymentLedgerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 7, 15, 12, 0);
+
+    @TempDir
+    Path directory;
+
+    private MappedFilePaymentLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new MappedFilePaymentLedger(directory.resolve("ledger.dat").toString(), 10_000, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ledger.close();
+    }
+
+    @Test
+    void keepsBackdatedTimestamps() {
+        PaymentEntity recent = payment(BASE.plusMinutes(5), "default", 1000);
+        PaymentEntity backdated = payment(BASE, "fallback", 500);
+        ledger.save(recent).block(TIMEOUT);
+        ledger.save(backdated).block(TIMEOUT);
+
+        List<PaymentEntity> exported = exportAll();
+
+        assertThat(exported).extracting(PaymentEntity::getCorrelationId)
+                .containsExactly(backdated.getCorrelationId(), recent.getCorrelationId());
+        assertThat(exported.get(0).getProcessedAt()).isEqualTo(BASE);
+        assertThat(totals(BASE, BASE).get("fallback")).isEqualTo(new ProcessorTotals(1, 500));
+        assertThat(totals(BASE, BASE).get("default")).isEqualTo(new ProcessorTotals(0, 0));
+    }
+
+    @Test
+    void summarizesOutOfOrderRecordsLikeDirectCount() {
+        Random random = new Random(42);
+        List<PaymentEntity> saved = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // Quase em ordem, com atrasos curtos e alguns reparos bem antigos
+            long offset = random.nextInt(20) == 0 ? random.nextInt(Math.max(1, i)) : i - random.nextInt(50);
+            PaymentEntity payment = payment(BASE.plusNanos(Math.max(0, offset) * 1_000_000),
+                    random.nextBoolean() ? "default" : "fallback", 1 + random.nextInt(10_000));
+            ledger.save(payment).block(TIMEOUT);
+            saved.add(payment);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime from = BASE.plusNanos(random.nextInt(5000) * 1_000_000L);
+            LocalDateTime to = from.plusNanos(random.nextInt(3000) * 1_000_000L);
+            assertThat(totals(from, to)).isEqualTo(directCount(saved, from, to));
+        }
+        assertThat(totals(null, null)).isEqualTo(directCount(saved, BASE, BASE.plusDays(1)));
+
+        List<PaymentEntity> exported = exportAll();
+        assertThat(exported).isSortedAccordingTo(Comparator.comparing(PaymentEntity::getProcessedAt));
+        assertThat(exported).extracting(PaymentEntity::getProcessedAt)
+                .containsExactlyInAnyOrderElementsOf(saved.stream().map(PaymentEntity::getProcessedAt).toList());
+    }
+
+    private Map<String, ProcessorTotals> totals(LocalDateTime from, LocalDateTime to) {
+        return ledger.summarize(from, to).block(TIMEOUT);
+    }
+
+    private List<PaymentEntity> exportAll() {
+        return ledger.export(null, null, null, PaymentEntity::new).collectList().block(TIMEOUT);
+    }
+
+    private static Map<String, ProcessorTotals> directCount(List<PaymentEntity> payments,
+                                                            LocalDateTime from, LocalDateTime to) {
+        long[] count = new long[2];
+        long[] cents = new long[2];
+        for (PaymentEntity payment : payments) {
+            if (!payment.getProcessedAt().isBefore(from) && !payment.getProcessedAt().isAfter(to)) {
+                int processor = "default".equals(payment.getProcessorUsed()) ? 0 : 1;
+                count[processor]++;
+                cents[processor] += payment.getAmountCents();
+            }
+        }
+        return Map.of("default", new ProcessorTotals(count[0], cents[0]),
+                "fallback", new ProcessorTotals(count[1], cents[1]));
+    }
+
+    private static PaymentEntity payment(LocalDateTime processedAt, String processor, long amountCents) {
+        return new PaymentEntity(UUID.randomUUID(), amountCents, processedAt, processor);
+    }
+}
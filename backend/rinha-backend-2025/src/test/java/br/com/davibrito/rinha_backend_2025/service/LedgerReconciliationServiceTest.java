@@ -0,0 +1,303 @@
+package br.com.davibrito.rinha_backend_2025.service;
+
+import br.com.davibrito.rinha_backend_2025.config.Bulkheads;
+import br.com.davibrito.rinha_backend_2025.model.PaymentEntity;
+import br.com.davibrito.rinha_backend_2025.repository.PaymentLedger;
+import br.com.davibrito.rinha_backend_2025.repository.ProcessorTotals;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reconciliação contra processadores simulados em Reactor Netty, servindo
+ * {@code GET /payments/{id}} e {@code GET /admin/payments-summary}, e um ledger em memória.
+ */
+class LedgerReconciliationServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final StubProcessor defaultProcessor = new StubProcessor();
+    private final StubProcessor fallbackProcessor = new StubProcessor();
+    private final InMemoryLedger ledger = new InMemoryLedger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private Bulkheads bulkheads;
+    private LedgerReconciliationService reconciliation;
+
+    @BeforeEach
+    void setUp() {
+        defaultProcessor.start();
+        fallbackProcessor.start();
+        bulkheads = new Bulkheads(new MockEnvironment(), meterRegistry);
+        reconciliation = new LedgerReconciliationService(
+                defaultProcessor.url() + "/payments",
+                fallbackProcessor.url() + "/payments",
+                "123",
+                Duration.ZERO,
+                50,
+                MAX_ATTEMPTS,
+                100,
+                ledger,
+                bulkheads,
+                meterRegistry,
+                WebClient.builder());
+    }
+
+    @AfterEach
+    void tearDown() {
+        reconciliation.close();
+        bulkheads.destroy();
+        defaultProcessor.stop();
+        fallbackProcessor.stop();
+    }
+
+    @Test
+    void repairsPaymentChargedButMissingFromLedger() {
+        UUID correlationId = UUID.randomUUID();
+        Instant requestedAt = Instant.parse("2025-07-15T12:34:56.000Z");
+        defaultProcessor.charged(correlationId, "19.90", requestedAt);
+
+        reconciliation.recordAmbiguous(correlationId, "default");
+        reconciliation.resolveAmbiguous().block(TIMEOUT);
+
+        PaymentEntity repaired = ledger.payments.get(correlationId);
+        assertThat(repaired).isNotNull();
+        assertThat(repaired.getAmountCents()).isEqualTo(1990);
+        assertThat(repaired.getProcessorUsed()).isEqualTo("default");
+        assertThat(repaired.getProcessedAt()).isEqualTo(LocalDateTime.ofInstant(requestedAt, ZoneId.systemDefault()));
+        assertThat(lookups("default", "repaired")).isEqualTo(1);
+        assertThat(pending()).isZero();
+    }
+
+    @Test
+    void countsDoubleChargeWhenAlreadyRecorded() {
+        UUID correlationId = UUID.randomUUID();
+        ledger.save(new PaymentEntity(correlationId, 1990, LocalDateTime.now(), "fallback")).block(TIMEOUT);
+        defaultProcessor.charged(correlationId, "19.90", Instant.now());
+
+        reconciliation.recordAmbiguous(correlationId, "default");
+        reconciliation.resolveAmbiguous().block(TIMEOUT);
+
+        assertThat(ledger.payments).hasSize(1);
+        assertThat(ledger.payments.get(correlationId).getProcessorUsed()).isEqualTo("fallback");
+        assertThat(lookups("default", "double-charged")).isEqualTo(1);
+        assertThat(lookups("default", "repaired")).isZero();
+    }
+
+    @Test
+    void countsNotFoundWhenProcessorNeverCharged() {
+        UUID correlationId = UUID.randomUUID();
+
+        reconciliation.recordAmbiguous(correlationId, "fallback");
+        reconciliation.resolveAmbiguous().block(TIMEOUT);
+
+        assertThat(ledger.payments).isEmpty();
+        assertThat(lookups("fallback", "not-found")).isEqualTo(1);
+        assertThat(pending()).isZero();
+    }
+
+    @Test
+    void requeuesErrorsUntilMaxAttempts() {
+        UUID correlationId = UUID.randomUUID();
+        defaultProcessor.failing.add(correlationId);
+
+        reconciliation.recordAmbiguous(correlationId, "default");
+        for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+            reconciliation.resolveAmbiguous().block(TIMEOUT);
+            assertThat(lookups("default", "error")).isEqualTo(attempt);
+            assertThat(pending()).isEqualTo(1);
+        }
+        reconciliation.resolveAmbiguous().block(TIMEOUT);
+
+        assertThat(lookups("default", "abandoned")).isEqualTo(1);
+        assertThat(pending()).isZero();
+        assertThat(ledger.payments).isEmpty();
+        assertThat(defaultProcessor.lookups.get()).isEqualTo(MAX_ATTEMPTS);
+    }
+
+    @Test
+    void publishesDriftBetweenProcessorsAndLedger() {
+        LocalDateTime earlier = LocalDateTime.now().minusMinutes(1);
+        ledger.save(new PaymentEntity(UUID.randomUUID(), 1990, earlier, "default")).block(TIMEOUT);
+        ledger.save(new PaymentEntity(UUID.randomUUID(), 500, earlier, "fallback")).block(TIMEOUT);
+        defaultProcessor.summary = "{\"totalRequests\":3,\"totalAmount\":59.70}";
+        fallbackProcessor.summary = "{\"totalRequests\":1,\"totalAmount\":5.00}";
+
+        reconciliation.measureDrift().block(TIMEOUT);
+
+        assertThat(drift("rinha.reconciliation.drift.requests", "default")).isEqualTo(2);
+        assertThat(drift("rinha.reconciliation.drift.amount", "default")).isEqualTo(39.80);
+        assertThat(drift("rinha.reconciliation.drift.requests", "fallback")).isZero();
+        assertThat(drift("rinha.reconciliation.drift.amount", "fallback")).isZero();
+        assertThat(defaultProcessor.tokens).containsOnly("123");
+    }
+
+    @Test
+    void connectionFailureIsNotAmbiguous() {
+        String url = defaultProcessor.url();
+        defaultProcessor.stop(); // Porta sem ninguém escutando: conexão recusada
+
+        Throwable error = sendError(url + "/payments");
+
+        assertThat(LedgerReconciliationService.isAmbiguous(error)).isFalse();
+    }
+
+    @Test
+    void connectionClosedMidExchangeIsAmbiguous() {
+        DisposableServer dropping = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> request.receive().then(Mono.fromRunnable(() ->
+                        request.withConnection(connection -> connection.channel().close()))).then())
+                .bindNow();
+        try {
+            Throwable error = sendError("http://localhost:" + dropping.port() + "/payments");
+
+            assertThat(LedgerReconciliationService.isAmbiguous(error)).isTrue();
+        } finally {
+            dropping.disposeNow();
+        }
+    }
+
+    private static Throwable sendError(String url) {
+        return WebClient.create(url).post()
+                .bodyValue("{}")
+                .retrieve()
+                .toBodilessEntity()
+                .map(response -> (Throwable) new AssertionError("Envio não deveria ter resposta"))
+                .onErrorResume(Mono::just)
+                .block(TIMEOUT);
+    }
+
+    private double lookups(String processor, String outcome) {
+        return meterRegistry.counter("rinha.reconciliation.lookups", "processor", processor, "outcome", outcome)
+                .count();
+    }
+
+    private double pending() {
+        return meterRegistry.get("rinha.reconciliation.ambiguous.pending").gauge().value();
+    }
+
+    private double drift(String name, String processor) {
+        return meterRegistry.get(name).tag("processor", processor).gauge().value();
+    }
+
+    /**
+     * Processador simulado: pagamentos cobrados respondem 200, ids em {@code failing}
+     * respondem 500 e os demais 404.
+     */
+    private static final class StubProcessor {
+
+        private final Map<UUID, String> payments = new ConcurrentHashMap<>();
+        private final Set<UUID> failing = ConcurrentHashMap.newKeySet();
+        private final Set<String> tokens = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger lookups = new AtomicInteger();
+        private volatile String summary = "{\"totalRequests\":0,\"totalAmount\":0}";
+        private DisposableServer server;
+
+        void charged(UUID correlationId, String amount, Instant requestedAt) {
+            payments.put(correlationId, "{\"correlationId\":\"" + correlationId + "\",\"amount\":" + amount
+                    + ",\"requestedAt\":\"" + requestedAt + "\"}");
+        }
+
+        void start() {
+            server = HttpServer.create()
+                    .port(0)
+                    .route(routes -> routes
+                            .get("/admin/payments-summary", (request, response) -> {
+                                tokens.add(String.valueOf(request.requestHeaders().get("X-Rinha-Token")));
+                                return json(response, summary);
+                            })
+                            .get("/payments/{id}", (request, response) -> {
+                                lookups.incrementAndGet();
+                                UUID correlationId = UUID.fromString(request.param("id"));
+                                if (failing.contains(correlationId)) {
+                                    return response.status(500).send();
+                                }
+                                String payment = payments.get(correlationId);
+                                return payment != null ? json(response, payment) : response.status(404).send();
+                            }))
+                    .bindNow();
+        }
+
+        String url() {
+            return "http://localhost:" + server.port();
+        }
+
+        void stop() {
+            server.disposeNow();
+        }
+
+        private static Mono<Void> json(HttpServerResponse response, String body) {
+            return response.header("Content-Type", "application/json")
+                    .sendString(Mono.just(body))
+                    .then();
+        }
+    }
+
+    /**
+     * Ledger em memória, com a mesma semântica de gravação única por correlationId.
+     */
+    private static final class InMemoryLedger implements PaymentLedger {
+
+        private final Map<UUID, PaymentEntity> payments = new ConcurrentHashMap<>();
+
+        @Override
+        public Flux<UUID> findExistingCorrelationIds(Collection<UUID> correlationIds) {
+            return Flux.fromIterable(correlationIds).filter(payments::containsKey);
+        }
+
+        @Override
+        public Mono<Boolean> save(PaymentEntity entity) {
+            return Mono.fromCallable(() -> payments.putIfAbsent(entity.getCorrelationId(), entity) == null);
+        }
+
+        @Override
+        public Mono<Map<String, ProcessorTotals>> summarize(LocalDateTime from, LocalDateTime to) {
+            return Mono.fromCallable(() -> {
+                Map<String, ProcessorTotals> totals = new HashMap<>();
+                for (PaymentEntity payment : payments.values()) {
+                    LocalDateTime processedAt = payment.getProcessedAt();
+                    if ((from == null || !processedAt.isBefore(from)) && (to == null || !processedAt.isAfter(to))) {
+                        totals.merge(payment.getProcessorUsed(), new ProcessorTotals(1, payment.getAmountCents()),
+                                (a, b) -> new ProcessorTotals(a.totalRequests() + b.totalRequests(),
+                                        a.totalAmountCents() + b.totalAmountCents()));
+                    }
+                }
+                return PaymentLedger.withBothProcessors(totals);
+            });
+        }
+
+        @Override
+        public <T> Flux<T> export(String processor, LocalDateTime from, LocalDateTime to, ExportRowMapper<T> mapper) {
+            return Flux.empty();
+        }
+
+        @Override
+        public Mono<Void> purge() {
+            return Mono.fromRunnable(payments::clear);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 CREATE TABLE processed_payments (
     id SERIAL PRIMARY KEY,
     correlation_id UUID NOT NULL UNIQUE,
-    amount DECIMAL(10, 2) NOT NULL,
+    amount_cents BIGINT NOT NULL,
     processed_at TIMESTAMP NOT NULL,
     processor_used VARCHAR(10) NOT NULL
 );
\ No newline at end of file